@@ -0,0 +1,109 @@
+package com.example.gateway.security;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.Field;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of authenticating one request with a valid token:
+ * <ul>
+ *   <li>{@code legacy}: the old path, a new key and parser per call and two parses per request
+ *       (validateToken, then extractUsername)</li>
+ *   <li>{@code sharedParser}: one parse with the reused key and parser, no cache</li>
+ *   <li>{@code synchronizedLru}: the previous cache, an access-ordered LinkedHashMap behind one lock</li>
+ *   <li>{@code cachedVerify}: JwtUtil.verifyToken for a token already in the verified-token cache</li>
+ * </ul>
+ * Runs with 8 threads so contention on the cache shows up. Run with {@code ./benchmark-jwt.sh}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 10, time = 2)
+@Fork(3)
+@Threads(8)
+public class JwtVerificationBenchmark {
+
+    private static final String SECRET = "benchmark-secret-key-that-is-at-least-256-bits-long";
+
+    private JwtUtil jwtUtil;
+    private JwtParser sharedParser;
+    private Map<String, Claims> synchronizedLru;
+    private String token;
+
+    @Setup
+    public void setUp() throws ReflectiveOperationException {
+        jwtUtil = new JwtUtil();
+        set("secret", SECRET);
+        set("expiration", 3_600_000L);
+        set("cacheMaxSize", 10_000);
+        jwtUtil.init();
+
+        token = jwtUtil.generateToken("user", List.of("ROLE_USER"), new Date());
+        sharedParser = Jwts.parserBuilder().setSigningKey(Keys.hmacShaKeyFor(SECRET.getBytes())).build();
+        jwtUtil.verifyToken(token);
+        synchronizedLru = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Claims> eldest) {
+                return size() > 10_000;
+            }
+        });
+        synchronizedLru.put(token, sharedParser.parseClaimsJws(token).getBody());
+    }
+
+    @Benchmark
+    public String legacy() {
+        legacyClaims(token);
+        return legacyClaims(token).getSubject();
+    }
+
+    @Benchmark
+    public Claims sharedParser() {
+        return sharedParser.parseClaimsJws(token).getBody();
+    }
+
+    @Benchmark
+    public Claims synchronizedLru() {
+        return synchronizedLru.get(token);
+    }
+
+    @Benchmark
+    public Optional<Claims> cachedVerify() {
+        return jwtUtil.verifyToken(token);
+    }
+
+    private static Claims legacyClaims(String token) {
+        return Jwts.parserBuilder()
+            .setSigningKey(Keys.hmacShaKeyFor(SECRET.getBytes()))
+            .build()
+            .parseClaimsJws(token)
+            .getBody();
+    }
+
+    private void set(String name, Object value) throws ReflectiveOperationException {
+        Field field = JwtUtil.class.getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(jwtUtil, value);
+    }
+}
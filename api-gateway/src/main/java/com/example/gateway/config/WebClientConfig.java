@@ -0,0 +1,53 @@
+package com.example.gateway.config;
+
+import io.netty.channel.ChannelOption;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+
+/**
+ * One WebClient for all downstream calls, backed by a bounded keep-alive connection pool, so
+ * proxied reads reuse connections instead of every controller owning its own client.
+ */
+@Configuration
+public class WebClientConfig {
+
+    @Value("${downstream.http.max-connections:200}")
+    private int maxConnections;
+
+    @Value("${downstream.http.pending-acquire-timeout:2s}")
+    private Duration pendingAcquireTimeout;
+
+    @Value("${downstream.http.max-idle-time:30s}")
+    private Duration maxIdleTime;
+
+    @Value("${downstream.http.connect-timeout:1s}")
+    private Duration connectTimeout;
+
+    @Value("${downstream.http.response-timeout:5s}")
+    private Duration responseTimeout;
+
+    @Bean(destroyMethod = "dispose")
+    public ConnectionProvider downstreamConnectionProvider() {
+        return ConnectionProvider.builder("downstream")
+            .maxConnections(maxConnections)
+            .pendingAcquireTimeout(pendingAcquireTimeout)
+            .maxIdleTime(maxIdleTime)
+            .evictInBackground(maxIdleTime)
+            .build();
+    }
+
+    @Bean
+    public WebClient downstreamWebClient(WebClient.Builder builder, ConnectionProvider downstreamConnectionProvider) {
+        HttpClient httpClient = HttpClient.create(downstreamConnectionProvider)
+            .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) connectTimeout.toMillis())
+            .responseTimeout(responseTimeout);
+        return builder.clientConnector(new ReactorClientHttpConnector(httpClient)).build();
+    }
+}
@@ -11,10 +11,14 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.Date;
+import java.util.List;
+
 @RestController
 @RequestMapping("/api/auth")
 @Tag(name = "Authentication", description = "Authentication endpoints")
@@ -40,8 +44,12 @@ public class AuthController {
         try {
             var userDetails = userDetailsService.loadUserByUsername(request.getUsername());
             if (passwordEncoder.matches(request.getPassword(), userDetails.getPassword())) {
-                String token = jwtUtil.generateToken(request.getUsername());
-                tokenService.storeToken(request.getUsername(), token);
+                Date issuedAt = new Date();
+                List<String> authorities = userDetails.getAuthorities().stream()
+                    .map(GrantedAuthority::getAuthority)
+                    .toList();
+                String token = jwtUtil.generateToken(request.getUsername(), authorities, issuedAt);
+                tokenService.registerLogin(request.getUsername(), issuedAt);
                 logger.info("Login successful for user: {}", request.getUsername());
                 return ResponseEntity.ok(new AuthResponse(token));
             }
@@ -1,8 +1,15 @@
 package com.example.gateway.dto;
 
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.ToStringSerializer;
+import io.swagger.v3.oas.annotations.media.Schema;
+
 import java.math.BigDecimal;
 
 public class OrderResponse {
+    // Snowflake ids exceed 2^53, which JSON numbers cannot hold exactly in JavaScript clients.
+    @JsonSerialize(using = ToStringSerializer.class)
+    @Schema(type = "string", example = "7185190429728768000")
     private Long id;
     private String customerId;
     private String productId;
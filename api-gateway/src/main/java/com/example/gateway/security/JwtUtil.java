@@ -1,55 +1,158 @@
 package com.example.gateway.security;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.security.Keys;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import java.nio.charset.StandardCharsets;
 import java.security.Key;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Collection;
 import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 
 @Component
 public class JwtUtil {
 
+    // Granted authorities (e.g. ROLE_USER), signed into the token so requests need no user lookup.
+    public static final String AUTHORITIES_CLAIM = "roles";
+
+    // Issue time in epoch milliseconds. The standard iat claim only has whole seconds, which is
+    // too coarse to tell a revoked token from one issued later in the same second.
+    public static final String ISSUED_AT_MILLIS_CLAIM = "iat_ms";
+
     @Value("${jwt.secret}")
     private String secret;
 
     @Value("${jwt.expiration:86400000}")
     private Long expiration;
 
-    private Key getSigningKey() {
-        return Keys.hmacShaKeyFor(secret.getBytes());
+    @Value("${jwt.cache.max-size:10000}")
+    private int cacheMaxSize;
+
+    private Key signingKey;
+    private JwtParser parser;
+
+    // SHA-256 digests of tokens that already passed signature verification, kept until their
+    // exp so repeat requests skip base64 decoding, HMAC and JSON parsing. Caffeine reads don't
+    // take a shared lock, so concurrent requests don't serialize on the cache.
+    private Cache<String, VerifiedToken> verifiedTokens;
+
+    @PostConstruct
+    public void init() {
+        signingKey = Keys.hmacShaKeyFor(secret.getBytes());
+        parser = Jwts.parserBuilder()
+            .setSigningKey(signingKey)
+            .build();
+        verifiedTokens = Caffeine.newBuilder()
+            .maximumSize(cacheMaxSize)
+            .expireAfter(new Expiry<String, VerifiedToken>() {
+                @Override
+                public long expireAfterCreate(String digest, VerifiedToken verified, long currentTime) {
+                    return TimeUnit.MILLISECONDS.toNanos(Math.max(0, verified.expiresAt() - System.currentTimeMillis()));
+                }
+
+                @Override
+                public long expireAfterUpdate(String digest, VerifiedToken verified, long currentTime, long currentDuration) {
+                    return expireAfterCreate(digest, verified, currentTime);
+                }
+
+                @Override
+                public long expireAfterRead(String digest, VerifiedToken verified, long currentTime, long currentDuration) {
+                    return currentDuration;
+                }
+            })
+            .build();
     }
 
     public String generateToken(String username) {
+        return generateToken(username, List.of(), new Date());
+    }
+
+    public String generateToken(String username, Collection<String> authorities, Date issuedAt) {
         return Jwts.builder()
             .setSubject(username)
-            .setIssuedAt(new Date())
-            .setExpiration(new Date(System.currentTimeMillis() + expiration))
-            .signWith(getSigningKey(), SignatureAlgorithm.HS256)
+            .claim(AUTHORITIES_CLAIM, authorities)
+            .setIssuedAt(issuedAt)
+            .claim(ISSUED_AT_MILLIS_CLAIM, issuedAt.getTime())
+            .setExpiration(new Date(issuedAt.getTime() + expiration))
+            .signWith(signingKey, SignatureAlgorithm.HS256)
             .compact();
     }
 
+    /**
+     * Verifies the token once and returns its claims, or empty when the signature is
+     * invalid or the token has expired.
+     */
+    public Optional<Claims> verifyToken(String token) {
+        String digest = digest(token);
+        VerifiedToken cached = verifiedTokens.getIfPresent(digest);
+        if (cached != null && cached.expiresAt() > System.currentTimeMillis()) {
+            return Optional.of(cached.claims());
+        }
+
+        try {
+            Claims claims = parser.parseClaimsJws(token).getBody();
+            Date exp = claims.getExpiration();
+            if (exp != null) {
+                verifiedTokens.put(digest, new VerifiedToken(claims, exp.getTime()));
+            }
+            return Optional.of(claims);
+        } catch (Exception e) {
+            return Optional.empty();
+        }
+    }
+
+    public List<String> extractAuthorities(Claims claims) {
+        Object authorities = claims.get(AUTHORITIES_CLAIM);
+        if (!(authorities instanceof Collection<?> values)) {
+            return List.of();
+        }
+        return values.stream().map(Object::toString).toList();
+    }
+
+    /**
+     * Issue time of the token in epoch milliseconds, falling back to the whole-second iat claim
+     * for tokens issued without {@value #ISSUED_AT_MILLIS_CLAIM}. Null when neither is present.
+     */
+    public static Long issuedAtMillis(Claims claims) {
+        Long issuedAtMillis = claims.get(ISSUED_AT_MILLIS_CLAIM, Long.class);
+        if (issuedAtMillis != null) {
+            return issuedAtMillis;
+        }
+        Date issuedAt = claims.getIssuedAt();
+        return issuedAt != null ? issuedAt.getTime() : null;
+    }
+
     public String extractUsername(String token) {
-        return extractClaims(token).getSubject();
+        return verifyToken(token).map(Claims::getSubject).orElse(null);
     }
 
     public boolean validateToken(String token) {
+        return verifyToken(token).isPresent();
+    }
+
+    private static String digest(String token) {
         try {
-            extractClaims(token);
-            return true;
-        } catch (Exception e) {
-            return false;
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
         }
     }
 
-    private Claims extractClaims(String token) {
-        return Jwts.parserBuilder()
-            .setSigningKey(getSigningKey())
-            .build()
-            .parseClaimsJws(token)
-            .getBody();
+    private record VerifiedToken(Claims claims, long expiresAt) {
     }
 }
@@ -0,0 +1,70 @@
+package com.example.gateway.service;
+
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.reactor.circuitbreaker.operator.CircuitBreakerOperator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Set;
+
+/**
+ * Passes downstream GET responses through without decoding them. Status, headers and body bytes
+ * are relayed as received, so a proxied read costs no Jackson parse and re-serialize. 4xx answers
+ * are passed on unchanged; 5xx answers, timeouts and connection errors count against the circuit
+ * breaker and are turned into a 503.
+ */
+@Service
+public class DownstreamProxy {
+    private static final Logger logger = LoggerFactory.getLogger(DownstreamProxy.class);
+
+    // Hop-by-hop headers describe the downstream connection, not the payload.
+    private static final Set<String> HOP_BY_HOP_HEADERS = Set.of(
+        "connection", "keep-alive", "proxy-authenticate", "proxy-authorization",
+        "te", "trailer", "transfer-encoding", "upgrade");
+
+    @Autowired
+    private WebClient downstreamWebClient;
+
+    @Autowired
+    private CircuitBreakerRegistry circuitBreakerRegistry;
+
+    @Value("${downstream.http.response-timeout:5s}")
+    private Duration timeout;
+
+    public Mono<ResponseEntity<byte[]>> get(String uri, String circuitBreakerName) {
+        CircuitBreaker cb = circuitBreakerRegistry.circuitBreaker(circuitBreakerName);
+
+        return downstreamWebClient.get()
+                .uri(uri)
+                .exchangeToMono(response -> {
+                    if (response.statusCode().is5xxServerError()) {
+                        return response.createException().flatMap(Mono::error);
+                    }
+                    HttpHeaders headers = new HttpHeaders();
+                    response.headers().asHttpHeaders().forEach((name, values) -> {
+                        if (!HOP_BY_HOP_HEADERS.contains(name.toLowerCase())) {
+                            headers.addAll(name, values);
+                        }
+                    });
+                    return response.bodyToMono(byte[].class)
+                        .map(body -> new ResponseEntity<>(body, headers, response.statusCode()))
+                        .defaultIfEmpty(new ResponseEntity<>(headers, response.statusCode()));
+                })
+                .timeout(timeout)
+                .transformDeferred(CircuitBreakerOperator.of(cb))
+                .onErrorResume(ex -> {
+                    logger.error("Circuit breaker fallback for {}, error: {}", uri, ex.getMessage());
+                    return Mono.just(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build());
+                });
+    }
+}
@@ -0,0 +1,135 @@
+package com.example.gateway.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Snowflake-style 64-bit ids: 41 bits of milliseconds since 2024-01-01, a 10-bit node id and a
+ * 12-bit per-millisecond sequence. Ids increase over time, so new rows are appended to the end of
+ * the primary key index. Lock-free.
+ *
+ * <p>Ids are unique across replicas because no two replicas use the same node id at once. The
+ * node id is either set explicitly ({@code id-generator.node-id}) or leased from Redis: a replica
+ * claims a free {@code id-generator.node.<n>} key with SET NX and keeps renewing it. If the lease
+ * cannot be renewed before it expires, no more ids are issued until a new node id is leased.
+ */
+@Component
+public class IdGenerator {
+
+    private static final Logger logger = LoggerFactory.getLogger(IdGenerator.class);
+
+    private static final long EPOCH = 1704067200000L;
+    private static final int NODE_BITS = 10;
+    private static final int SEQUENCE_BITS = 12;
+    private static final long MAX_NODE_ID = (1L << NODE_BITS) - 1;
+    private static final String LEASE_KEY_PREFIX = "id-generator.node.";
+
+    private static final RedisScript<Long> RENEW_SCRIPT = RedisScript.of(
+        "if redis.call('GET', KEYS[1]) == ARGV[1] then return redis.call('PEXPIRE', KEYS[1], ARGV[2]) end return 0",
+        Long.class);
+    private static final RedisScript<Long> RELEASE_SCRIPT = RedisScript.of(
+        "if redis.call('GET', KEYS[1]) == ARGV[1] then return redis.call('DEL', KEYS[1]) end return 0",
+        Long.class);
+
+    private final RedisTemplate<String, String> redisTemplate;
+    private final Duration leaseTtl;
+    private final boolean leased;
+    private final String owner = UUID.randomUUID().toString();
+
+    private volatile long nodeId;
+    private volatile long leaseValidUntil = Long.MAX_VALUE;
+
+    // Last issued (timestamp << SEQUENCE_BITS | sequence). A sequence overflow borrows the next
+    // millisecond, and a clock that steps back keeps counting from the last id.
+    private final AtomicLong lastTimestampAndSequence = new AtomicLong();
+
+    public IdGenerator(RedisTemplate<String, String> redisTemplate,
+                       @Value("${id-generator.node-id:-1}") long nodeId,
+                       @Value("${id-generator.lease-ttl:30s}") Duration leaseTtl) {
+        if (nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException("id-generator.node-id must be between 0 and " + MAX_NODE_ID);
+        }
+        this.redisTemplate = redisTemplate;
+        this.leaseTtl = leaseTtl;
+        this.leased = nodeId < 0;
+        if (leased) {
+            leaseNodeId();
+        } else {
+            this.nodeId = nodeId;
+            logger.info("Id generator using node id {}", nodeId);
+        }
+    }
+
+    public long nextId() {
+        if (System.currentTimeMillis() >= leaseValidUntil) {
+            throw new IllegalStateException("Id generator node id lease expired");
+        }
+        long now = (System.currentTimeMillis() - EPOCH) << SEQUENCE_BITS;
+        long next = lastTimestampAndSequence.updateAndGet(last -> Math.max(now, last + 1));
+        long timestamp = next >>> SEQUENCE_BITS;
+        long sequence = next & ((1L << SEQUENCE_BITS) - 1);
+        return (timestamp << (NODE_BITS + SEQUENCE_BITS)) | (nodeId << SEQUENCE_BITS) | sequence;
+    }
+
+    @Scheduled(fixedDelayString = "${id-generator.lease-renew-interval:10000}")
+    public void renewLease() {
+        if (!leased) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        try {
+            Long renewed = redisTemplate.execute(RENEW_SCRIPT, List.of(LEASE_KEY_PREFIX + nodeId),
+                owner, String.valueOf(leaseTtl.toMillis()));
+            if (renewed != null && renewed == 1) {
+                leaseValidUntil = start + leaseTtl.toMillis();
+            } else {
+                logger.error("Lost the lease on id generator node id {}, leasing a new one", nodeId);
+                leaseNodeId();
+            }
+        } catch (Exception e) {
+            logger.warn("Could not renew id generator node id {} lease: {}", nodeId, e.toString());
+        }
+    }
+
+    @PreDestroy
+    public void releaseLease() {
+        if (!leased) {
+            return;
+        }
+        try {
+            redisTemplate.execute(RELEASE_SCRIPT, List.of(LEASE_KEY_PREFIX + nodeId), owner);
+        } catch (Exception e) {
+            logger.warn("Could not release id generator node id {}: {}", nodeId, e.toString());
+        }
+    }
+
+    // Starts at a random node id so replicas starting together rarely contend for the same key.
+    private void leaseNodeId() {
+        long first = ThreadLocalRandom.current().nextLong(MAX_NODE_ID + 1);
+        for (long i = 0; i <= MAX_NODE_ID; i++) {
+            long candidate = (first + i) & MAX_NODE_ID;
+            long start = System.currentTimeMillis();
+            if (Boolean.TRUE.equals(redisTemplate.opsForValue().setIfAbsent(LEASE_KEY_PREFIX + candidate, owner, leaseTtl))) {
+                nodeId = candidate;
+                leaseValidUntil = start + leaseTtl.toMillis();
+                logger.info("Id generator leased node id {}", candidate);
+                return;
+            }
+        }
+        leaseValidUntil = 0;
+        throw new IllegalStateException("No free id generator node id, all " + (MAX_NODE_ID + 1) + " are leased");
+    }
+}
@@ -1,39 +1,104 @@
 package com.example.gateway.service;
 
+import com.example.gateway.security.JwtUtil;
+import io.jsonwebtoken.Claims;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
-import java.util.concurrent.TimeUnit;
+import java.util.Date;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Keeps a local per-user "not before" cutoff so token validation never touches Redis.
+ * Cutoffs are epoch milliseconds compared against the token's millisecond issue time, written
+ * to the jwt:not-before-cutoffs sorted set (scored by cutoff) and broadcast on the
+ * jwt-revocations-ms channel (see RedisConfig); the live cutoffs are resynced periodically in
+ * case a message was missed.
+ */
 @Service
 public class TokenService {
     private static final Logger logger = LoggerFactory.getLogger(TokenService.class);
 
+    public static final String NOT_BEFORE_KEY = "jwt:not-before-cutoffs";
+    public static final String REVOCATION_CHANNEL = "jwt-revocations-ms";
+
     @Autowired
     private RedisTemplate<String, String> redisTemplate;
 
     @Value("${jwt.expiration:86400000}")
     private Long expiration;
 
-    public void storeToken(String username, String token) {
-        String key = "jwt:" + username;
-        redisTemplate.opsForValue().set(key, token, expiration, TimeUnit.MILLISECONDS);
-        logger.info("Token stored in Redis for user: {}", username);
-    }
+    private final Map<String, Long> notBefore = new ConcurrentHashMap<>();
 
-    public boolean validateToken(String username, String token) {
-        String key = "jwt:" + username;
-        String storedToken = redisTemplate.opsForValue().get(key);
-        return token.equals(storedToken);
+    /**
+     * Records a login: every token issued to the user before this one stops being accepted.
+     */
+    public void registerLogin(String username, Date issuedAt) {
+        revokeTokensIssuedBefore(username, issuedAt.getTime());
+        logger.info("Login registered for user: {}", username);
     }
 
     public void revokeToken(String username) {
-        String key = "jwt:" + username;
-        redisTemplate.delete(key);
+        revokeTokensIssuedBefore(username, System.currentTimeMillis() + 1);
         logger.info("Token revoked for user: {}", username);
     }
+
+    public boolean isTokenValid(Claims claims) {
+        Long cutoff = notBefore.get(claims.getSubject());
+        if (cutoff == null) {
+            return true;
+        }
+        Long issuedAt = JwtUtil.issuedAtMillis(claims);
+        return issuedAt != null && issuedAt >= cutoff;
+    }
+
+    public void applyRevocation(String message) {
+        int separator = message.lastIndexOf(':');
+        if (separator <= 0) {
+            logger.warn("Ignoring malformed revocation message: {}", message);
+            return;
+        }
+        String username = message.substring(0, separator);
+        long epochMilli;
+        try {
+            epochMilli = Long.parseLong(message.substring(separator + 1));
+        } catch (NumberFormatException e) {
+            logger.warn("Ignoring malformed revocation message: {}", message);
+            return;
+        }
+        notBefore.merge(username, epochMilli, Math::max);
+        logger.debug("Applied token revocation for user: {} issued before {}", username, epochMilli);
+    }
+
+    @Scheduled(initialDelay = 0, fixedDelayString = "${jwt.revocation.resync-interval:30000}")
+    public void resyncRevocations() {
+        // A cutoff older than the token lifetime can no longer reject anything, so it is dropped
+        // from Redis too and a resync only reads the cutoffs of live tokens.
+        long oldestLiveIssuedAt = System.currentTimeMillis() - expiration;
+        try {
+            redisTemplate.opsForZSet().removeRangeByScore(NOT_BEFORE_KEY, Double.NEGATIVE_INFINITY, oldestLiveIssuedAt - 1);
+            Set<ZSetOperations.TypedTuple<String>> cutoffs =
+                redisTemplate.opsForZSet().rangeByScoreWithScores(NOT_BEFORE_KEY, oldestLiveIssuedAt, Double.POSITIVE_INFINITY);
+            if (cutoffs != null) {
+                cutoffs.forEach(cutoff -> notBefore.merge(cutoff.getValue(), cutoff.getScore().longValue(), Math::max));
+            }
+        } catch (Exception e) {
+            logger.warn("Could not resync token revocations from Redis: {}", e.getMessage());
+        }
+        notBefore.values().removeIf(cutoff -> cutoff < oldestLiveIssuedAt);
+    }
+
+    private void revokeTokensIssuedBefore(String username, long epochMilli) {
+        notBefore.merge(username, epochMilli, Math::max);
+        redisTemplate.opsForZSet().add(NOT_BEFORE_KEY, username, epochMilli);
+        redisTemplate.convertAndSend(REVOCATION_CHANNEL, username + ":" + epochMilli);
+    }
 }
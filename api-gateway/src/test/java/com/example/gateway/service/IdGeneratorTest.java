@@ -0,0 +1,134 @@
+package com.example.gateway.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class IdGeneratorTest {
+
+    private static final long EPOCH = 1704067200000L;
+    private static final Duration LEASE_TTL = Duration.ofSeconds(30);
+
+    @Test
+    void idsCarryTimestampNodeIdAndSequence() {
+        IdGenerator idGenerator = new IdGenerator(null, 5, LEASE_TTL);
+
+        long before = System.currentTimeMillis();
+        long id = idGenerator.nextId();
+        long after = System.currentTimeMillis();
+
+        assertThat(id).isPositive();
+        assertThat((id >>> 22) + EPOCH).isBetween(before, after);
+        assertThat((id >>> 12) & 0x3FF).isEqualTo(5);
+    }
+
+    @Test
+    void idsIncreaseWithinAndAcrossMilliseconds() {
+        IdGenerator idGenerator = new IdGenerator(null, 1, LEASE_TTL);
+
+        long previous = idGenerator.nextId();
+        for (int i = 0; i < 100_000; i++) {
+            long next = idGenerator.nextId();
+            assertThat(next).isGreaterThan(previous);
+            previous = next;
+        }
+    }
+
+    @Test
+    void concurrentCallersNeverGetTheSameId() throws Exception {
+        IdGenerator idGenerator = new IdGenerator(null, 1, LEASE_TTL);
+        int threads = 4;
+        int perThread = 50_000;
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < perThread; i++) {
+                        ids.add(idGenerator.nextId());
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(ids).hasSize(threads * perThread);
+    }
+
+    @Test
+    void rejectsNodeIdsThatDoNotFitTenBits() {
+        assertThatThrownBy(() -> new IdGenerator(null, 1024, LEASE_TTL))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void usesTheNodeIdLeasedFromRedis() {
+        RedisTemplate<String, String> redisTemplate = redisTemplate();
+        when(redisTemplate.opsForValue().setIfAbsent(anyString(), anyString(), eq(LEASE_TTL)))
+            .thenAnswer(invocation -> invocation.getArgument(0).equals("id-generator.node.42"));
+
+        IdGenerator idGenerator = new IdGenerator(redisTemplate, -1, LEASE_TTL);
+
+        assertThat((idGenerator.nextId() >>> 12) & 0x3FF).isEqualTo(42);
+    }
+
+    @Test
+    void failsToStartWhenEveryNodeIdIsLeased() {
+        RedisTemplate<String, String> redisTemplate = redisTemplate();
+        when(redisTemplate.opsForValue().setIfAbsent(anyString(), anyString(), eq(LEASE_TTL))).thenReturn(false);
+
+        assertThatThrownBy(() -> new IdGenerator(redisTemplate, -1, LEASE_TTL))
+            .isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void stopsIssuingIdsOnceTheLeaseIsLostAndCannotBeReplaced() {
+        RedisTemplate<String, String> redisTemplate = redisTemplate();
+        when(redisTemplate.opsForValue().setIfAbsent(anyString(), anyString(), eq(LEASE_TTL))).thenReturn(true, false);
+        when(redisTemplate.execute(any(RedisScript.class), anyList(), any(), any())).thenReturn(0L);
+        IdGenerator idGenerator = new IdGenerator(redisTemplate, -1, LEASE_TTL);
+        idGenerator.nextId();
+
+        // The renewal finds the key taken over and no other node id free
+        idGenerator.renewLease();
+
+        assertThatThrownBy(idGenerator::nextId).isInstanceOf(IllegalStateException.class);
+    }
+
+    @SuppressWarnings("unchecked")
+    private RedisTemplate<String, String> redisTemplate() {
+        RedisTemplate<String, String> redisTemplate = mock(RedisTemplate.class);
+        ValueOperations<String, String> valueOperations = mock(ValueOperations.class);
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        return redisTemplate;
+    }
+}
@@ -0,0 +1,58 @@
+#!/bin/bash
+
+# Measures how fast order-service persists a backlog of OrderCreated events (one order, one
+# saga_state and one saga_events row each) with JDBC batching off and on. "Unbatched" runs with
+# hibernate.jdbc.batch_size=1 and no reWriteBatchedInserts, i.e. one round trip per row as with
+# the old IDENTITY keys; "Batched" uses the defaults (sequence blocks of 50, multi-row inserts).
+# Needs the stack running via docker-compose with freshly built images.
+
+# Sagas time out 60s after they start; keep a run shorter than that so timeouts do not overlap it
+EVENTS=${EVENTS:-10000}
+
+psql_value() {
+    docker exec postgres psql -U postgres -d eventdb -tAc "$1"
+}
+
+wait_healthy() {
+    for i in $(seq 1 60); do
+        [ "$(docker inspect -f '{{.State.Health.Status}}' "$1" 2>/dev/null)" = "healthy" ] && return 0
+        sleep 5
+    done
+    echo "❌ $1 did not become healthy"
+    exit 1
+}
+
+run_mode() {
+    label=$1
+    docker-compose stop order-service > /dev/null
+    baseline=$(psql_value "SELECT COALESCE(MAX(id), 0) FROM orders")
+
+    # Queue the whole backlog while order-service is down, so it drains in full batches
+    seq 1 "$EVENTS" | awk '{printf "{\"eventType\":\"OrderCreated\",\"customerId\":\"bench-%d\",\"productId\":\"product-001\",\"quantity\":1,\"amount\":\"10.00\"}\n", $1}' \
+        | docker exec -i kafka kafka-console-producer --bootstrap-server localhost:9092 --topic order-events > /dev/null
+
+    HIBERNATE_BATCH_SIZE=$2 REWRITE_BATCHED_INSERTS=$3 \
+        docker-compose up -d --no-deps --force-recreate order-service > /dev/null
+    wait_healthy order-service
+
+    for i in $(seq 1 120); do
+        [ "$(psql_value "SELECT COUNT(*) FROM orders WHERE id > $baseline")" -ge "$EVENTS" ] && break
+        sleep 1
+    done
+
+    seconds=$(psql_value "SELECT EXTRACT(EPOCH FROM MAX(created_at) - MIN(created_at)) FROM orders WHERE id > $baseline")
+    rows=$((EVENTS * 3))
+    printf "%-12s %-10s %-12s %s\n" "$label" "$rows" "$seconds" "$(awk -v r="$rows" -v s="$seconds" 'BEGIN {printf "%.0f", r / s}')"
+
+    # Let this run's saga timeouts fire before the next run is measured
+    sleep 75
+}
+
+echo "Persisting $EVENTS OrderCreated events ($((EVENTS * 3)) rows) per run"
+echo ""
+echo "Mode         Rows       Seconds      Rows/s"
+run_mode Unbatched 1 false
+run_mode Batched 50 true
+
+# Leave order-service in its default mode
+docker-compose up -d --no-deps --force-recreate order-service > /dev/null
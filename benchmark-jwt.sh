@@ -0,0 +1,9 @@
+#!/bin/bash
+
+# JMH comparison of JWT verification in api-gateway: the old per-call key/parser path (two
+# parses per request), one parse with the shared parser, the previous synchronized LRU cache and
+# the current Caffeine-backed verified-token cache. Runs locally with 8 benchmark threads; use a
+# multi-core machine, otherwise lock contention on the caches cannot show up.
+
+cd "$(dirname "$0")/api-gateway" || exit 1
+mvn -B -q -Pjmh test-compile exec:exec
@@ -0,0 +1,58 @@
+#!/bin/bash
+
+# Compares throughput of order-service and payment-service on platform threads and on
+# virtual threads (VIRTUAL_THREADS_ENABLED) under a blocking-heavy profile: many more
+# concurrent clients than Tomcat has threads, every request blocking on JDBC.
+# Needs the stack running via docker-compose with freshly built images.
+
+REQUESTS=${REQUESTS:-20000}
+CONCURRENCY=${CONCURRENCY:-500}
+TARGETS="order-service:8081/api/orders/1 payment-service:8082/api/payments/1"
+
+wait_healthy() {
+    for i in $(seq 1 60); do
+        [ "$(docker inspect -f '{{.State.Health.Status}}' "$1" 2>/dev/null)" = "healthy" ] && return 0
+        sleep 5
+    done
+    echo "❌ $1 did not become healthy"
+    exit 1
+}
+
+run_mode() {
+    VIRTUAL_THREADS_ENABLED=$1 docker-compose up -d --no-deps --force-recreate order-service payment-service > /dev/null
+    wait_healthy payment-service
+    wait_healthy order-service
+
+    for target in $TARGETS; do
+        service=${target%%:*}
+        # Warm up the JIT and connection pools at full load before measuring; throughput only
+        # levels off after a few rounds of the full request count
+        for i in 1 2 3; do
+            docker run --rm --network "container:$service" httpd:2.4-alpine \
+                ab -q -k -n "$REQUESTS" -c "$CONCURRENCY" "http://localhost:${target#*:}" > /dev/null
+        done
+        rps=$(docker run --rm --network "container:$service" httpd:2.4-alpine \
+            ab -q -k -n "$REQUESTS" -c "$CONCURRENCY" "http://localhost:${target#*:}" \
+            | awk '/Requests per second/ {print $4}')
+        echo "$1 $service $rps" >> "$RESULTS"
+    done
+}
+
+RESULTS=$(mktemp)
+echo "Blocking-heavy profile: $REQUESTS requests, $CONCURRENCY concurrent clients per service"
+echo ""
+
+run_mode false
+run_mode true
+
+echo "Service            Platform (req/s)   Virtual (req/s)"
+for target in $TARGETS; do
+    service=${target%%:*}
+    platform=$(awk -v s="$service" '$1 == "false" && $2 == s {print $3}' "$RESULTS")
+    virtual=$(awk -v s="$service" '$1 == "true" && $2 == s {print $3}' "$RESULTS")
+    printf "%-18s %-18s %s\n" "$service" "$platform" "$virtual"
+done
+rm -f "$RESULTS"
+
+# Leave the services in their default mode
+docker-compose up -d --no-deps --force-recreate order-service payment-service > /dev/null
@@ -34,35 +34,96 @@ CREATE UNIQUE INDEX IF NOT EXISTS idx_payments_order_id_unique ON payments(order
 -- Create saga_state table for distributed transaction management
 CREATE TABLE IF NOT EXISTS saga_state (
     id BIGSERIAL PRIMARY KEY,
-    saga_id VARCHAR(36) NOT NULL UNIQUE,
+    saga_id UUID NOT NULL UNIQUE,
     order_id BIGINT NOT NULL UNIQUE,
     status VARCHAR(50) NOT NULL,
     current_step VARCHAR(50),
     payment_id BIGINT,
     timeout_at TIMESTAMP,
+    partition_no INTEGER NOT NULL DEFAULT 0,
     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
     updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
 );
 
+-- Databases created before sagas were tied to an order-events partition (no-op otherwise)
+ALTER TABLE saga_state ADD COLUMN IF NOT EXISTS partition_no INTEGER NOT NULL DEFAULT 0;
+
+-- Databases created before saga_id was a native uuid column (no-op otherwise)
+ALTER TABLE saga_state ALTER COLUMN saga_id TYPE UUID USING saga_id::uuid;
+
 -- Create indexes for saga_state
 CREATE INDEX IF NOT EXISTS idx_saga_state_saga_id ON saga_state(saga_id);
 CREATE INDEX IF NOT EXISTS idx_saga_state_order_id ON saga_state(order_id);
 CREATE INDEX IF NOT EXISTS idx_saga_state_status ON saga_state(status);
+DROP INDEX IF EXISTS idx_saga_state_status_timeout;
+CREATE INDEX IF NOT EXISTS idx_saga_state_status_partition_timeout ON saga_state(status, partition_no, timeout_at);
 
 -- Create saga_events table for audit trail
 CREATE TABLE IF NOT EXISTS saga_events (
     id BIGSERIAL PRIMARY KEY,
-    saga_id VARCHAR(36) NOT NULL,
+    saga_id UUID NOT NULL,
     event_type VARCHAR(50) NOT NULL,
     event_data TEXT,
     status VARCHAR(20) DEFAULT 'LOGGED',
     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
 );
 
+ALTER TABLE saga_events ALTER COLUMN saga_id TYPE UUID USING saga_id::uuid;
+
 -- Create indexes for saga_events
 CREATE INDEX IF NOT EXISTS idx_saga_events_saga_id ON saga_events(saga_id);
 CREATE INDEX IF NOT EXISTS idx_saga_events_created_at ON saga_events(created_at);
 
+-- Create outbox table: events written in the same transaction as the state change that caused
+-- them, published to Kafka by each service's OutboxRelay and deleted once acknowledged
+CREATE TABLE IF NOT EXISTS outbox (
+    id BIGSERIAL PRIMARY KEY,
+    source VARCHAR(50) NOT NULL,
+    topic VARCHAR(255) NOT NULL,
+    partition_no INTEGER,
+    message_key VARCHAR(255),
+    payload TEXT NOT NULL,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    attempts INTEGER NOT NULL DEFAULT 0,
+    last_error TEXT
+);
+
+-- Outbox tables created before failed sends were tracked per row (no-op otherwise)
+ALTER TABLE outbox ADD COLUMN IF NOT EXISTS attempts INTEGER NOT NULL DEFAULT 0;
+ALTER TABLE outbox ADD COLUMN IF NOT EXISTS last_error TEXT;
+
+CREATE INDEX IF NOT EXISTS idx_outbox_source_id ON outbox(source, id);
+-- Lowest pending row per key, so a relay never publishes past a row another relay holds
+CREATE INDEX IF NOT EXISTS idx_outbox_source_key ON outbox(source, message_key, id);
+
+-- Outbox rows that failed outbox.max-attempts sends, kept for inspection and manual replay
+CREATE TABLE IF NOT EXISTS outbox_dead_letter (
+    id BIGINT PRIMARY KEY,
+    source VARCHAR(50) NOT NULL,
+    topic VARCHAR(255) NOT NULL,
+    partition_no INTEGER,
+    message_key VARCHAR(255),
+    payload TEXT NOT NULL,
+    created_at TIMESTAMP,
+    attempts INTEGER NOT NULL,
+    last_error TEXT,
+    failed_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+-- Outbox rows of a key with a dead letter are held back until it is replayed or deleted
+CREATE INDEX IF NOT EXISTS idx_outbox_dead_letter_key ON outbox_dead_letter(source, message_key);
+
+-- Wake the relays on commit; NOTIFY folds identical payloads, so one per source per transaction
+CREATE OR REPLACE FUNCTION notify_outbox() RETURNS trigger AS $$
+BEGIN
+    PERFORM pg_notify('outbox', NEW.source);
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS outbox_notify ON outbox;
+CREATE TRIGGER outbox_notify AFTER INSERT ON outbox FOR EACH ROW EXECUTE FUNCTION notify_outbox();
+
 -- Insert sample data for testing
 INSERT INTO orders (customer_id, product_id, quantity, amount, status) VALUES
 ('customer-001', 'product-001', 2, 99.99, 'COMPLETED'),
@@ -79,3 +140,15 @@ INSERT INTO saga_state (saga_id, order_id, status, current_step, payment_id) VAL
 ('00000000-0000-0000-0000-000000000001', 1, 'COMPLETED', 'PAYMENT_COMPLETED', 1),
 ('00000000-0000-0000-0000-000000000003', 3, 'COMPLETED', 'PAYMENT_COMPLETED', 2)
 ON CONFLICT DO NOTHING;
+
+-- Entities take ids from these sequences in blocks of 50 (pooled optimizer, allocationSize = 50),
+-- which lets Hibernate batch inserts. This has to run after the sample data: its rows take ids from
+-- the sequences one step at a time, and the sample payments and sagas refer to orders 1 and 3, which
+-- would be numbered 1, 51 and 101 with INCREMENT BY 50 already in place. Existing ids are safe: the
+-- sequences are already past every id in use, and each nextval now returns the top of a fresh block
+-- of 50 above the previous value, so Hibernate never hands out an id at or below it.
+ALTER SEQUENCE IF EXISTS orders_id_seq INCREMENT BY 50;
+ALTER SEQUENCE IF EXISTS payments_id_seq INCREMENT BY 50;
+ALTER SEQUENCE IF EXISTS saga_state_id_seq INCREMENT BY 50;
+ALTER SEQUENCE IF EXISTS saga_events_id_seq INCREMENT BY 50;
+ALTER SEQUENCE IF EXISTS outbox_id_seq INCREMENT BY 50;
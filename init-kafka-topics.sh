@@ -21,13 +21,24 @@ echo "✓ Created order-events topic"
 kafka-topics --create \
   --bootstrap-server localhost:9092 \
   --topic order-response \
-  --partitions 1 \
+  --partitions ${ORDER_RESPONSE_PARTITIONS:-6} \
   --replication-factor 1 \
   --if-not-exists \
   --config retention.ms=3600000
 
 echo "✓ Created order-response topic"
 
+# Create order-status-events topic
+kafka-topics --create \
+  --bootstrap-server localhost:9092 \
+  --topic order-status-events \
+  --partitions 3 \
+  --replication-factor 1 \
+  --if-not-exists \
+  --config retention.ms=3600000
+
+echo "✓ Created order-status-events topic"
+
 # Create payment-events topic
 kafka-topics --create \
   --bootstrap-server localhost:9092 \
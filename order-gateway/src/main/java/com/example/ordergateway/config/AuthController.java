@@ -15,6 +15,8 @@ import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.web.bind.annotation.*;
 import reactor.core.publisher.Mono;
 
+import java.util.Date;
+
 @RestController
 @RequestMapping("/api/auth")
 @Tag(name = "Authentication", description = "Authentication endpoints")
@@ -35,8 +37,9 @@ public class AuthController {
         logger.info("Login attempt for user: {}", request.getUsername());
         
         if ("admin".equals(request.getUsername()) && "admin".equals(request.getPassword())) {
-            String token = jwtUtil.generateToken(request.getUsername());
-            return tokenService.storeToken(request.getUsername(), token)
+            Date issuedAt = new Date();
+            String token = jwtUtil.generateToken(request.getUsername(), issuedAt);
+            return tokenService.registerLogin(request.getUsername(), issuedAt)
                 .then(Mono.fromCallable(() -> {
                     logger.info("Login successful for user: {}", request.getUsername());
                     return ResponseEntity.ok(new AuthResponse(token));
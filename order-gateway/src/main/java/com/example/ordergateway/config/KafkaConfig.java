@@ -0,0 +1,36 @@
+package com.example.ordergateway.config;
+
+import com.example.ordergateway.service.ReplyPartitionTracker;
+import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.common.config.TopicConfig;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.kafka.ConcurrentKafkaListenerContainerFactoryConfigurer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+import org.springframework.kafka.config.TopicBuilder;
+import org.springframework.kafka.core.ConsumerFactory;
+
+@Configuration
+public class KafkaConfig {
+
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<Object, Object> orderResponseListenerContainerFactory(
+            ConcurrentKafkaListenerContainerFactoryConfigurer configurer,
+            ConsumerFactory<Object, Object> consumerFactory,
+            ReplyPartitionTracker replyPartitionTracker) {
+        ConcurrentKafkaListenerContainerFactory<Object, Object> factory = new ConcurrentKafkaListenerContainerFactory<>();
+        configurer.configure(factory, consumerFactory);
+        factory.getContainerProperties().setConsumerRebalanceListener(replyPartitionTracker);
+        return factory;
+    }
+
+    // Created, or grown, at startup; each gateway replica needs a partition of its own for replies.
+    @Bean
+    public NewTopic orderResponseTopic(@Value("${order.response.partitions:6}") int partitions) {
+        return TopicBuilder.name(ReplyPartitionTracker.REPLY_TOPIC)
+            .partitions(partitions)
+            .config(TopicConfig.RETENTION_MS_CONFIG, "3600000")
+            .build();
+    }
+}
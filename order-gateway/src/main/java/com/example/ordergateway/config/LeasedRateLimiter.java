@@ -0,0 +1,252 @@
+package com.example.ordergateway.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.gateway.filter.ratelimit.AbstractRateLimiter;
+import org.springframework.cloud.gateway.filter.ratelimit.RedisRateLimiter;
+import org.springframework.cloud.gateway.support.ConfigurationService;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Two-tier rate limiter used by every RequestRateLimiter route. Each instance keeps a local
+ * token bucket per route and client key and leases tokens from a shared Redis bucket in
+ * batches of {@code leaseSize}, refilling in the background before the local bucket runs dry.
+ * Almost every decision is therefore made in memory, while the Redis bucket still bounds the
+ * total across replicas (give or take the tokens each replica holds on lease).
+ * If Redis is slow or unavailable, leases fall back to a per-instance bucket with the same rate.
+ */
+@Component
+@Primary
+public class LeasedRateLimiter extends AbstractRateLimiter<LeasedRateLimiter.Config> {
+    private static final Logger logger = LoggerFactory.getLogger(LeasedRateLimiter.class);
+
+    public static final String CONFIGURATION_PROPERTY_NAME = "leased-rate-limiter";
+
+    private static final RedisScript<Long> LEASE_SCRIPT =
+        RedisScript.of(new ClassPathResource("scripts/leased_rate_limiter.lua"), Long.class);
+
+    private final ReactiveStringRedisTemplate redisTemplate;
+    private final MeterRegistry meterRegistry;
+
+    private final Map<String, LocalBucket> buckets = new ConcurrentHashMap<>();
+    private final Map<String, RouteMeters> routeMeters = new ConcurrentHashMap<>();
+
+    private final long leaseTtlNanos;
+    private final Duration leaseTimeout;
+    private final long idleTimeoutNanos;
+
+    public LeasedRateLimiter(ReactiveStringRedisTemplate redisTemplate,
+                             MeterRegistry meterRegistry,
+                             ConfigurationService configurationService,
+                             @Value("${rate-limiter.lease-ttl:1s}") Duration leaseTtl,
+                             @Value("${rate-limiter.lease-timeout:250ms}") Duration leaseTimeout,
+                             @Value("${rate-limiter.idle-timeout:5m}") Duration idleTimeout) {
+        super(Config.class, CONFIGURATION_PROPERTY_NAME, configurationService);
+        this.redisTemplate = redisTemplate;
+        this.meterRegistry = meterRegistry;
+        this.leaseTtlNanos = leaseTtl.toNanos();
+        this.leaseTimeout = leaseTimeout;
+        this.idleTimeoutNanos = idleTimeout.toNanos();
+        meterRegistry.gaugeMapSize("rate_limiter_local_buckets", Tags.empty(), buckets);
+    }
+
+    @Override
+    public Mono<Response> isAllowed(String routeId, String id) {
+        Config config = getConfig().get(routeId);
+        if (config == null) {
+            throw new IllegalArgumentException("No Configuration found for route " + routeId);
+        }
+
+        LocalBucket bucket = buckets.computeIfAbsent(routeId + "." + id,
+            key -> new LocalBucket(key, config, metersFor(routeId)));
+        Mono<Integer> lease;
+        synchronized (bucket) {
+            long now = System.nanoTime();
+            bucket.lastUsed = now;
+            if (bucket.tokens > 0 && now - bucket.leasedAt > leaseTtlNanos) {
+                // Unused leased tokens are dropped rather than hoarded, so an idle replica
+                // cannot sit on capacity the others need.
+                bucket.tokens = 0;
+            }
+
+            if (bucket.tokens > 0) {
+                bucket.tokens--;
+                if (bucket.tokens <= config.getLeaseSize() / 2 && bucket.pendingLease == null && now >= bucket.nextLeaseAt) {
+                    startLease(bucket, config);
+                }
+                return Mono.just(response(true, bucket.tokens, config));
+            }
+
+            if (bucket.pendingLease != null) {
+                lease = bucket.pendingLease;
+            } else if (now < bucket.nextLeaseAt) {
+                bucket.meters.localRejects.increment();
+                return Mono.just(response(false, 0, config));
+            } else {
+                lease = startLease(bucket, config);
+            }
+        }
+
+        return lease.map(granted -> {
+            synchronized (bucket) {
+                if (bucket.tokens > 0) {
+                    bucket.tokens--;
+                    return response(true, bucket.tokens, config);
+                }
+                bucket.meters.localRejects.increment();
+                return response(false, 0, config);
+            }
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${rate-limiter.cleanup-interval:60000}")
+    public void evictIdleBuckets() {
+        long idleSince = System.nanoTime() - idleTimeoutNanos;
+        buckets.values().removeIf(bucket -> bucket.lastUsed - idleSince < 0 && bucket.pendingLease == null);
+    }
+
+    // Called with the bucket lock held.
+    private Mono<Integer> startLease(LocalBucket bucket, Config config) {
+        Mono<Integer> lease = redisTemplate.execute(LEASE_SCRIPT, bucket.redisKeys, List.of(
+                Integer.toString(config.getReplenishRate()),
+                Integer.toString(config.getBurstCapacity()),
+                Integer.toString(config.getLeaseSize())))
+            .next()
+            .map(Long::intValue)
+            .timeout(leaseTimeout)
+            .onErrorResume(e -> {
+                bucket.meters.redisFallbacks.increment();
+                logger.warn("Rate limiter lease from Redis failed, using local bucket for {}: {}", bucket.key, e.getMessage());
+                synchronized (bucket) {
+                    return Mono.just(bucket.fallbackLease(config));
+                }
+            })
+            .defaultIfEmpty(0)
+            .doOnNext(granted -> credit(bucket, config, granted))
+            .cache();
+        bucket.pendingLease = lease;
+        lease.subscribe();
+        return lease;
+    }
+
+    private void credit(LocalBucket bucket, Config config, int granted) {
+        synchronized (bucket) {
+            long now = System.nanoTime();
+            bucket.pendingLease = null;
+            if (granted > 0) {
+                bucket.tokens += granted;
+                bucket.leasedAt = now;
+                bucket.meters.leaseRefills.increment();
+                bucket.meters.leasedTokens.increment(granted);
+            } else {
+                // The shared bucket is empty; don't ask again before it can have refilled one token.
+                bucket.nextLeaseAt = now + 1_000_000_000L / config.getReplenishRate();
+            }
+        }
+    }
+
+    private Response response(boolean allowed, long remaining, Config config) {
+        return new Response(allowed, Map.of(
+            RedisRateLimiter.REMAINING_HEADER, Long.toString(remaining),
+            RedisRateLimiter.REPLENISH_RATE_HEADER, Integer.toString(config.getReplenishRate()),
+            RedisRateLimiter.BURST_CAPACITY_HEADER, Integer.toString(config.getBurstCapacity())));
+    }
+
+    private RouteMeters metersFor(String routeId) {
+        return routeMeters.computeIfAbsent(routeId, route -> new RouteMeters(
+            meterRegistry.counter("rate_limiter_lease_refills", "route", route),
+            meterRegistry.counter("rate_limiter_leased_tokens", "route", route),
+            meterRegistry.counter("rate_limiter_local_rejects", "route", route),
+            meterRegistry.counter("rate_limiter_redis_fallbacks", "route", route)));
+    }
+
+    private record RouteMeters(Counter leaseRefills, Counter leasedTokens, Counter localRejects, Counter redisFallbacks) {
+    }
+
+    private static final class LocalBucket {
+        private final String key;
+        private final List<String> redisKeys;
+        private final RouteMeters meters;
+
+        // Guarded by the bucket's monitor.
+        private int tokens;
+        private long leasedAt;
+        private long nextLeaseAt;
+        private Mono<Integer> pendingLease;
+        private double fallbackTokens;
+        private long fallbackRefilledAt;
+
+        private volatile long lastUsed;
+
+        LocalBucket(String key, Config config, RouteMeters meters) {
+            this.key = key;
+            // The hash tag keeps both keys in one slot on a Redis cluster.
+            String prefix = "leased_rate_limiter.{" + key + "}.";
+            this.redisKeys = List.of(prefix + "tokens", prefix + "timestamp");
+            this.meters = meters;
+            long now = System.nanoTime();
+            this.nextLeaseAt = now;
+            this.fallbackTokens = config.getBurstCapacity();
+            this.fallbackRefilledAt = now;
+            this.lastUsed = now;
+        }
+
+        int fallbackLease(Config config) {
+            long now = System.nanoTime();
+            double elapsedSeconds = (now - fallbackRefilledAt) / 1_000_000_000.0;
+            fallbackTokens = Math.min(config.getBurstCapacity(), fallbackTokens + elapsedSeconds * config.getReplenishRate());
+            fallbackRefilledAt = now;
+            int granted = (int) Math.min(Math.floor(fallbackTokens), config.getLeaseSize());
+            fallbackTokens -= granted;
+            return granted;
+        }
+    }
+
+    public static class Config {
+        private int replenishRate = 1;
+        private int burstCapacity = 1;
+        private int leaseSize = 0;
+
+        public int getReplenishRate() {
+            return replenishRate;
+        }
+
+        public void setReplenishRate(int replenishRate) {
+            this.replenishRate = replenishRate;
+        }
+
+        public int getBurstCapacity() {
+            return burstCapacity;
+        }
+
+        public void setBurstCapacity(int burstCapacity) {
+            this.burstCapacity = burstCapacity;
+        }
+
+        /**
+         * Tokens taken from Redis per lease. Defaults to a fifth of the burst capacity.
+         */
+        public int getLeaseSize() {
+            return leaseSize > 0 ? leaseSize : Math.max(1, burstCapacity / 5);
+        }
+
+        public void setLeaseSize(int leaseSize) {
+            this.leaseSize = leaseSize;
+        }
+    }
+}
@@ -59,6 +59,10 @@ public class OpenApiConfig {
                     .description("Create a new order and publish event to Kafka")
                     .tags(java.util.List.of("Orders"))
                     .addSecurityItem(new SecurityRequirement().addList("Bearer Authentication"))
+                    .addParametersItem(new io.swagger.v3.oas.models.parameters.HeaderParameter()
+                        .name("Idempotency-Key")
+                        .description("Client-chosen key; repeating a request with the same key replays the first response")
+                        .schema(new Schema<>().type("string").maxLength(255)))
                     .requestBody(new RequestBody()
                         .required(true)
                         .content(new Content()
@@ -72,6 +76,51 @@ public class OpenApiConfig {
                                     .schema(new Schema<>().$ref("#/components/schemas/OrderResponse")))))
                         .addApiResponse("400", new ApiResponse().description("Invalid request"))
                         .addApiResponse("401", new ApiResponse().description("Unauthorized"))
-                        .addApiResponse("429", new ApiResponse().description("Too many requests")))));
+                        .addApiResponse("409", new ApiResponse().description("A request with the same Idempotency-Key is still being processed"))
+                        .addApiResponse("413", new ApiResponse().description("Request body too large"))
+                        .addApiResponse("422", new ApiResponse().description("Idempotency-Key was already used for a different request"))
+                        .addApiResponse("429", new ApiResponse().description("Too many requests"))
+                        .addApiResponse("503", new ApiResponse().description("Order event could not be published")))))
+            .path("/api/orders/batch", new PathItem()
+                .post(new Operation()
+                    .summary("Create orders in batch")
+                    .description("Submit a JSON array or NDJSON stream of orders; results stream back as NDJSON, one line per item, as orders are created")
+                    .tags(java.util.List.of("Orders"))
+                    .addSecurityItem(new SecurityRequirement().addList("Bearer Authentication"))
+                    .requestBody(new RequestBody()
+                        .required(true)
+                        .content(new Content()
+                            .addMediaType("application/json", new MediaType()
+                                .schema(new Schema<>().type("array").items(new Schema<>().$ref("#/components/schemas/OrderRequest"))))
+                            .addMediaType("application/x-ndjson", new MediaType()
+                                .schema(new Schema<>().$ref("#/components/schemas/OrderRequest")))))
+                    .responses(new ApiResponses()
+                        .addApiResponse("200", new ApiResponse()
+                            .description("Per-item results with index and orderId, or index and error")
+                            .content(new Content()
+                                .addMediaType("application/x-ndjson", new MediaType()
+                                    .schema(new Schema<>().$ref("#/components/schemas/OrderResponse")))))
+                        .addApiResponse("400", new ApiResponse().description("Malformed or empty batch"))
+                        .addApiResponse("401", new ApiResponse().description("Unauthorized"))
+                        .addApiResponse("413", new ApiResponse().description("Batch too large"))
+                        .addApiResponse("429", new ApiResponse().description("Too many requests")))))
+            .path("/api/orders/{orderId}/events", new PathItem()
+                .get(new Operation()
+                    .summary("Stream order status")
+                    .description("Server-Sent Events stream of the order's status: the current status first, then every change, ending after a terminal status")
+                    .tags(java.util.List.of("Orders"))
+                    .addSecurityItem(new SecurityRequirement().addList("Bearer Authentication"))
+                    .addParametersItem(new io.swagger.v3.oas.models.parameters.PathParameter()
+                        .name("orderId")
+                        .schema(new Schema<>().type("integer").format("int64")))
+                    .responses(new ApiResponses()
+                        .addApiResponse("200", new ApiResponse()
+                            .description("`status` events with orderId, status and timestamp; `error` event if the order does not exist")
+                            .content(new Content()
+                                .addMediaType("text/event-stream", new MediaType())))
+                        .addApiResponse("400", new ApiResponse().description("Invalid order id"))
+                        .addApiResponse("401", new ApiResponse().description("Unauthorized"))
+                        .addApiResponse("429", new ApiResponse().description("Too many requests"))
+                        .addApiResponse("503", new ApiResponse().description("Too many open status streams")))));
     }
 }
@@ -0,0 +1,22 @@
+package com.example.ordergateway.dto;
+
+public class OrderStatusEvent {
+    private Long orderId;
+    private String status;
+    private String timestamp;
+
+    public OrderStatusEvent() {}
+
+    public OrderStatusEvent(Long orderId, String status, String timestamp) {
+        this.orderId = orderId;
+        this.status = status;
+        this.timestamp = timestamp;
+    }
+
+    public Long getOrderId() { return orderId; }
+    public void setOrderId(Long orderId) { this.orderId = orderId; }
+    public String getStatus() { return status; }
+    public void setStatus(String status) { this.status = status; }
+    public String getTimestamp() { return timestamp; }
+    public void setTimestamp(String timestamp) { this.timestamp = timestamp; }
+}
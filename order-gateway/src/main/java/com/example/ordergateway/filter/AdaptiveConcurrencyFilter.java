@@ -0,0 +1,209 @@
+package com.example.ordergateway.filter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Caps the number of in-flight requests per limiter, sizing the cap from observed latency with
+ * a gradient algorithm: while short-term latency stays close to the long-term baseline the limit
+ * grows, and as upstream latency rises (queueing) or requests fail with 5xx it shrinks.
+ * Requests over the limit are shed immediately with 503.
+ */
+@Component
+public class AdaptiveConcurrencyFilter extends AbstractGatewayFilterFactory<AdaptiveConcurrencyFilter.Config> {
+    private static final Logger logger = LoggerFactory.getLogger(AdaptiveConcurrencyFilter.class);
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final Map<String, GradientLimiter> limiters = new ConcurrentHashMap<>();
+
+    public AdaptiveConcurrencyFilter() {
+        super(Config.class);
+    }
+
+    @Override
+    public GatewayFilter apply(Config config) {
+        // Keyed by name so a route refresh keeps the learned limit and the registered gauges.
+        GradientLimiter limiter = limiters.computeIfAbsent(config.getName(), name -> new GradientLimiter(name, config, meterRegistry));
+        return (exchange, chain) -> {
+            if (!limiter.tryAcquire()) {
+                ServerHttpResponse response = exchange.getResponse();
+                response.setStatusCode(HttpStatus.SERVICE_UNAVAILABLE);
+                response.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+                response.getHeaders().set(HttpHeaders.RETRY_AFTER, "1");
+                return response.writeWith(Mono.fromSupplier(() -> JsonBuffers.object(objectMapper, response.bufferFactory(),
+                    json -> json.writeStringField("error", "Service is overloaded. Please try again later."))));
+            }
+
+            long start = System.nanoTime();
+            return chain.filter(exchange)
+                .doFinally(signal -> {
+                    if (signal == SignalType.CANCEL) {
+                        // The client went away; the elapsed time says nothing about upstream latency.
+                        limiter.release();
+                        return;
+                    }
+                    HttpStatusCode status = exchange.getResponse().getStatusCode();
+                    boolean dropped = signal == SignalType.ON_ERROR || (status != null && status.is5xxServerError());
+                    limiter.onSample(System.nanoTime() - start, dropped);
+                });
+        };
+    }
+
+    static final class GradientLimiter {
+        private final String name;
+        private final int minLimit;
+        private final int maxLimit;
+        private final double tolerance;
+        private final double smoothing;
+        private final double backoffRatio;
+        private final double longRttAlpha;
+        private final double shortRttAlpha;
+
+        private final AtomicInteger inFlight = new AtomicInteger(0);
+        private final Counter shedCounter;
+
+        // Guarded by this.
+        private double estimatedLimit;
+        private double longRtt;
+        private double shortRtt;
+
+        private volatile int limit;
+
+        GradientLimiter(String name, Config config, MeterRegistry meterRegistry) {
+            this.name = name;
+            this.minLimit = config.getMinLimit();
+            this.maxLimit = config.getMaxLimit();
+            this.tolerance = config.getTolerance();
+            this.smoothing = config.getSmoothing();
+            this.backoffRatio = config.getBackoffRatio();
+            this.longRttAlpha = 2.0 / (config.getLongWindow() + 1);
+            this.shortRttAlpha = 2.0 / (config.getShortWindow() + 1);
+            this.estimatedLimit = config.getInitialLimit();
+            this.limit = config.getInitialLimit();
+
+            meterRegistry.gauge("gateway_concurrency_limit", Tags.of("name", name), this, l -> l.limit);
+            meterRegistry.gauge("gateway_concurrency_inflight", Tags.of("name", name), inFlight);
+            this.shedCounter = meterRegistry.counter("gateway_concurrency_shed", "name", name);
+        }
+
+        boolean tryAcquire() {
+            while (true) {
+                int current = inFlight.get();
+                if (current >= limit) {
+                    shedCounter.increment();
+                    logger.debug("Shedding request for {}: {} in flight, limit {}", name, current, limit);
+                    return false;
+                }
+                if (inFlight.compareAndSet(current, current + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        void release() {
+            inFlight.decrementAndGet();
+        }
+
+        int getLimit() {
+            return limit;
+        }
+
+        void onSample(long rttNanos, boolean dropped) {
+            int inFlightAtSample = inFlight.getAndDecrement();
+            synchronized (this) {
+                update(rttNanos, dropped, inFlightAtSample);
+            }
+        }
+
+        // Called with the limiter lock held.
+        private void update(long rttNanos, boolean dropped, int inFlightAtSample) {
+            if (longRtt == 0) {
+                longRtt = rttNanos;
+                shortRtt = rttNanos;
+            } else {
+                longRtt += (rttNanos - longRtt) * longRttAlpha;
+                shortRtt += (rttNanos - shortRtt) * shortRttAlpha;
+            }
+            // Let the baseline follow a sustained drop in latency instead of waiting out the long window.
+            if (longRtt / shortRtt > 2) {
+                longRtt *= 0.95;
+            }
+
+            double newLimit;
+            if (dropped) {
+                newLimit = estimatedLimit * backoffRatio;
+            } else if (inFlightAtSample < estimatedLimit / 2) {
+                // Not enough load to learn anything about capacity.
+                return;
+            } else {
+                double gradient = Math.max(0.5, Math.min(1.0, tolerance * longRtt / shortRtt));
+                double queueSize = Math.sqrt(estimatedLimit);
+                newLimit = estimatedLimit * gradient + queueSize;
+                newLimit = estimatedLimit * (1 - smoothing) + newLimit * smoothing;
+            }
+
+            estimatedLimit = Math.max(minLimit, Math.min(maxLimit, newLimit));
+            int rounded = (int) estimatedLimit;
+            if (rounded != limit) {
+                logger.debug("Concurrency limit for {} changed from {} to {}", name, limit, rounded);
+                limit = rounded;
+            }
+        }
+    }
+
+    public static class Config {
+        private String name = "default";
+        private int initialLimit = 20;
+        private int minLimit = 4;
+        private int maxLimit = 500;
+        // How much short-term latency may exceed the baseline before the limit starts to shrink.
+        private double tolerance = 1.5;
+        private double smoothing = 0.2;
+        private double backoffRatio = 0.9;
+        private int longWindow = 600;
+        private int shortWindow = 10;
+
+        public String getName() { return name; }
+        public void setName(String name) { this.name = name; }
+        public int getInitialLimit() { return initialLimit; }
+        public void setInitialLimit(int initialLimit) { this.initialLimit = initialLimit; }
+        public int getMinLimit() { return minLimit; }
+        public void setMinLimit(int minLimit) { this.minLimit = minLimit; }
+        public int getMaxLimit() { return maxLimit; }
+        public void setMaxLimit(int maxLimit) { this.maxLimit = maxLimit; }
+        public double getTolerance() { return tolerance; }
+        public void setTolerance(double tolerance) { this.tolerance = tolerance; }
+        public double getSmoothing() { return smoothing; }
+        public void setSmoothing(double smoothing) { this.smoothing = smoothing; }
+        public double getBackoffRatio() { return backoffRatio; }
+        public void setBackoffRatio(double backoffRatio) { this.backoffRatio = backoffRatio; }
+        public int getLongWindow() { return longWindow; }
+        public void setLongWindow(int longWindow) { this.longWindow = longWindow; }
+        public int getShortWindow() { return shortWindow; }
+        public void setShortWindow(int shortWindow) { this.shortWindow = shortWindow; }
+    }
+}
@@ -0,0 +1,217 @@
+package com.example.ordergateway.filter;
+
+import com.example.ordergateway.filter.ResponseCaptureFilter.ResponseCapture;
+import com.example.ordergateway.service.IdempotencyStore;
+import com.example.ordergateway.service.IdempotencyStore.IdempotencyRecord;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferLimitException;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpRequestDecorator;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Makes POST/PUT/PATCH/DELETE requests carrying an Idempotency-Key header safe to repeat. The
+ * first request with a key (per authenticated user) is processed and its response stored; later
+ * requests with the same key get that response replayed with {@code Idempotent-Replayed: true}
+ * instead of being processed again. A repeat that arrives while the first request is still in
+ * flight gets 409, and reusing a key for a different method, path or body gets 422. Responses with a
+ * 5xx status are not stored, so the client can retry them with the same key, and responses marked
+ * with {@link #PROVISIONAL_RESPONSE_ATTR} are only kept for {@code idempotency.provisional-ttl}.
+ */
+@Component
+public class IdempotencyFilter extends AbstractGatewayFilterFactory<IdempotencyFilter.Config> {
+    private static final Logger logger = LoggerFactory.getLogger(IdempotencyFilter.class);
+
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+    // Scoped key of the current request, for filters that pass it on downstream. Its request body
+    // has been read and can be replayed.
+    public static final String IDEMPOTENCY_KEY_ATTR = "idempotencyKey";
+    // Set by a downstream filter when its response does not carry the outcome of the request yet.
+    public static final String PROVISIONAL_RESPONSE_ATTR = "idempotencyProvisionalResponse";
+
+    private static final Set<HttpMethod> SAFE_METHODS = Set.of(HttpMethod.GET, HttpMethod.HEAD, HttpMethod.OPTIONS, HttpMethod.TRACE);
+
+    @Autowired
+    private IdempotencyStore idempotencyStore;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${idempotency.max-key-length:255}")
+    private int maxKeyLength;
+
+    @Value("${idempotency.max-body-size:16KB}")
+    private DataSize maxBodySize;
+
+    public IdempotencyFilter() {
+        super(Config.class);
+    }
+
+    @Override
+    public GatewayFilter apply(Config config) {
+        // Runs in its place on the route, after the rate limiter and outside RetryBudgetFilter;
+        // ResponseCaptureFilter hands it the response body, including proxied bodies.
+        return (exchange, chain) -> {
+            ServerHttpRequest request = exchange.getRequest();
+            String idempotencyKey = request.getHeaders().getFirst(RetryBudgetFilter.IDEMPOTENCY_KEY_HEADER);
+            if (idempotencyKey == null || SAFE_METHODS.contains(request.getMethod())) {
+                return chain.filter(exchange);
+            }
+            if (idempotencyKey.isBlank() || idempotencyKey.length() > maxKeyLength) {
+                return writeError(exchange, HttpStatus.BAD_REQUEST,
+                    "Idempotency-Key must be between 1 and " + maxKeyLength + " characters");
+            }
+            int maxBytes = (int) maxBodySize.toBytes();
+            if (request.getHeaders().getContentLength() > maxBytes) {
+                return writeError(exchange, HttpStatus.PAYLOAD_TOO_LARGE, "Request body exceeds " + maxBytes + " bytes");
+            }
+
+            String user = exchange.getAttribute(JwtAuthenticationFilter.USERNAME_ATTR);
+            String key = (user != null ? user : "anonymous") + ":" + idempotencyKey;
+            exchange.getAttributes().put(IDEMPOTENCY_KEY_ATTR, key);
+
+            // The body is part of the fingerprint, so it is read here and replayed to the filters downstream.
+            return DataBufferUtils.join(request.getBody(), maxBytes)
+                .map(buffer -> {
+                    byte[] bytes = new byte[buffer.readableByteCount()];
+                    buffer.read(bytes);
+                    DataBufferUtils.release(buffer);
+                    return bytes;
+                })
+                .defaultIfEmpty(new byte[0])
+                .flatMap(body -> {
+                    ServerHttpRequest cachedRequest = new ServerHttpRequestDecorator(request) {
+                        @Override
+                        public Flux<DataBuffer> getBody() {
+                            return Flux.defer(() -> Flux.just(exchange.getResponse().bufferFactory().wrap(body)));
+                        }
+                    };
+                    String fingerprint = request.getMethod().name() + " " + request.getPath().value() + " " + bodyHash(body);
+                    return claim(exchange.mutate().request(cachedRequest).build(), chain, key, fingerprint);
+                })
+                .onErrorResume(DataBufferLimitException.class,
+                    e -> writeError(exchange, HttpStatus.PAYLOAD_TOO_LARGE, "Request body exceeds " + maxBytes + " bytes"));
+        };
+    }
+
+    private Mono<Void> claim(ServerWebExchange exchange, GatewayFilterChain chain, String key, String fingerprint) {
+        return idempotencyStore.claim(key, fingerprint).flatMap(existing -> {
+            if (existing.isEmpty()) {
+                return process(exchange, chain, key, fingerprint);
+            }
+            IdempotencyRecord record = existing.get();
+            if (!record.fingerprint().equals(fingerprint)) {
+                count(exchange, "idempotency_key_mismatches");
+                return writeError(exchange, HttpStatus.UNPROCESSABLE_ENTITY,
+                    "Idempotency-Key was already used for a different request");
+            }
+            if (!record.completed()) {
+                count(exchange, "idempotency_conflicts");
+                exchange.getResponse().getHeaders().set(HttpHeaders.RETRY_AFTER, "1");
+                return writeError(exchange, HttpStatus.CONFLICT,
+                    "A request with this Idempotency-Key is still being processed");
+            }
+            count(exchange, "idempotency_replays");
+            logger.debug("Replaying stored response for idempotency key {}", key);
+            return replay(exchange, record);
+        });
+    }
+
+    private static String bodyHash(byte[] body) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(body);
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private Mono<Void> process(ServerWebExchange exchange, GatewayFilterChain chain, String key, String fingerprint) {
+        ResponseCaptureFilter.capture(exchange, new ResponseCapture() {
+            private final AtomicBoolean settled = new AtomicBoolean(false);
+
+            @Override
+            public Mono<Void> captured(ServerHttpResponse response, HttpStatusCode status, byte[] body) {
+                settled.set(true);
+                if (status.is5xxServerError()) {
+                    return idempotencyStore.release(key);
+                }
+                MediaType contentType = response.getHeaders().getContentType();
+                IdempotencyRecord record = new IdempotencyRecord(fingerprint, true, status.value(),
+                    contentType != null ? contentType.toString() : null, body);
+                // Store before answering, so a retry sent right after this response finds it.
+                return Boolean.TRUE.equals(exchange.getAttribute(PROVISIONAL_RESPONSE_ATTR))
+                    ? idempotencyStore.completeProvisional(key, record)
+                    : idempotencyStore.complete(key, record);
+            }
+
+            @Override
+            public void finished(SignalType signal) {
+                // A cancelled request may still have taken effect, so its claim is left to expire.
+                if (signal != SignalType.CANCEL && settled.compareAndSet(false, true)) {
+                    idempotencyStore.release(key).subscribe();
+                }
+            }
+        });
+        return chain.filter(exchange);
+    }
+
+    private Mono<Void> replay(ServerWebExchange exchange, IdempotencyRecord record) {
+        ServerHttpResponse response = exchange.getResponse();
+        response.setStatusCode(HttpStatusCode.valueOf(record.status()));
+        if (record.contentType() != null) {
+            response.getHeaders().setContentType(MediaType.parseMediaType(record.contentType()));
+        }
+        response.getHeaders().set(REPLAYED_HEADER, "true");
+        byte[] body = record.body() != null ? record.body() : new byte[0];
+        return response.writeWith(Mono.fromSupplier(() -> response.bufferFactory().wrap(body)));
+    }
+
+    private Mono<Void> writeError(ServerWebExchange exchange, HttpStatus status, String message) {
+        ServerHttpResponse response = exchange.getResponse();
+        response.setStatusCode(status);
+        response.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+        return response.writeWith(Mono.fromSupplier(() ->
+            JsonBuffers.object(objectMapper, response.bufferFactory(), json -> json.writeStringField("error", message))));
+    }
+
+    private void count(ServerWebExchange exchange, String name) {
+        Route route = exchange.getAttribute(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR);
+        meterRegistry.counter(name, "route", route != null ? route.getId() : "unknown").increment();
+    }
+
+    public static class Config {
+    }
+}
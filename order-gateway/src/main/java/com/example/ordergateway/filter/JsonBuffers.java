@@ -0,0 +1,60 @@
+package com.example.ordergateway.filter;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Serializes small JSON objects straight into buffers from the response's (pooled)
+ * factory, without an intermediate String.
+ */
+final class JsonBuffers {
+    private static final int INITIAL_CAPACITY = 256;
+
+    private JsonBuffers() {
+    }
+
+    static DataBuffer object(ObjectMapper objectMapper, DataBufferFactory bufferFactory, JsonBody body) {
+        return write(objectMapper, bufferFactory, body, null, null);
+    }
+
+    // One object followed by a newline, for application/x-ndjson streams.
+    static DataBuffer line(ObjectMapper objectMapper, DataBufferFactory bufferFactory, JsonBody body) {
+        return write(objectMapper, bufferFactory, body, null, "\n");
+    }
+
+    // One named Server-Sent Event with the object as its data, for text/event-stream responses.
+    static DataBuffer event(ObjectMapper objectMapper, DataBufferFactory bufferFactory, String name, JsonBody body) {
+        return write(objectMapper, bufferFactory, body, "event: " + name + "\ndata: ", "\n\n");
+    }
+
+    private static DataBuffer write(ObjectMapper objectMapper, DataBufferFactory bufferFactory, JsonBody body,
+                                    String prefix, String suffix) {
+        DataBuffer buffer = bufferFactory.allocateBuffer(INITIAL_CAPACITY);
+        try (JsonGenerator json = objectMapper.getFactory().createGenerator(buffer.asOutputStream())) {
+            if (prefix != null) {
+                json.writeRaw(prefix);
+            }
+            json.writeStartObject();
+            body.write(json);
+            json.writeEndObject();
+            if (suffix != null) {
+                json.writeRaw(suffix);
+            }
+        } catch (IOException e) {
+            DataBufferUtils.release(buffer);
+            throw new UncheckedIOException(e);
+        }
+        return buffer;
+    }
+
+    @FunctionalInterface
+    interface JsonBody {
+        void write(JsonGenerator json) throws IOException;
+    }
+}
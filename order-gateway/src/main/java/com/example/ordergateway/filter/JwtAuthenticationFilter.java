@@ -2,6 +2,7 @@ package com.example.ordergateway.filter;
 
 import com.example.ordergateway.security.JwtUtil;
 import com.example.ordergateway.service.TokenService;
+import io.jsonwebtoken.Claims;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -14,10 +15,14 @@ import org.springframework.stereotype.Component;
 import org.springframework.web.server.ServerWebExchange;
 import reactor.core.publisher.Mono;
 
+import java.util.Optional;
+
 @Component
 public class JwtAuthenticationFilter implements GlobalFilter, Ordered {
     private static final Logger logger = LoggerFactory.getLogger(JwtAuthenticationFilter.class);
 
+    public static final String USERNAME_ATTR = "authenticatedUser";
+
     @Autowired
     private JwtUtil jwtUtil;
 
@@ -42,24 +47,23 @@ public class JwtAuthenticationFilter implements GlobalFilter, Ordered {
         }
 
         String token = authHeader.substring(7);
-        if (!jwtUtil.validateToken(token)) {
+        Optional<Claims> claims = jwtUtil.verifyToken(token);
+        if (claims.isEmpty()) {
             logger.warn("Invalid JWT token for path: {}", path);
             exchange.getResponse().setStatusCode(HttpStatus.UNAUTHORIZED);
             return exchange.getResponse().setComplete();
         }
 
-        String username = jwtUtil.extractUsername(token);
-        return tokenService.isTokenValid(username, token)
-            .flatMap(isValid -> {
-                if (isValid) {
-                    logger.info("Authenticated user: {} for path: {}", username, path);
-                    return chain.filter(exchange);
-                } else {
-                    logger.warn("Token not found in Redis for user: {}", username);
-                    exchange.getResponse().setStatusCode(HttpStatus.UNAUTHORIZED);
-                    return exchange.getResponse().setComplete();
-                }
-            });
+        String username = claims.get().getSubject();
+        if (!tokenService.isTokenValid(claims.get())) {
+            logger.warn("Revoked JWT token for user: {}", username);
+            exchange.getResponse().setStatusCode(HttpStatus.UNAUTHORIZED);
+            return exchange.getResponse().setComplete();
+        }
+
+        logger.info("Authenticated user: {} for path: {}", username, path);
+        exchange.getAttributes().put(USERNAME_ATTR, username);
+        return chain.filter(exchange);
     }
 
     @Override
@@ -0,0 +1,214 @@
+package com.example.ordergateway.filter;
+
+import com.example.ordergateway.dto.OrderRequest;
+import com.example.ordergateway.filter.JsonBuffers.JsonBody;
+import com.example.ordergateway.service.OrderEventService;
+import com.example.ordergateway.service.IdGenerator;
+import com.example.ordergateway.service.OrderResponseRegistry;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.deser.DeserializationProblemHandler;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferLimitException;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.InputStream;
+import java.math.RoundingMode;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Handles POST /api/orders/batch. Accepts a JSON array or an NDJSON stream of orders,
+ * publishes every valid order in one batched producer pass and streams back one NDJSON
+ * line per item as its order-response reply (or error) arrives.
+ */
+@Component
+public class OrderBatchFilter extends AbstractGatewayFilterFactory<OrderBatchFilter.Config> {
+    private static final Logger logger = LoggerFactory.getLogger(OrderBatchFilter.class);
+
+    // MappingIterator fails the whole batch on a null item; read it as null and reject it per item.
+    private static final DeserializationProblemHandler NULL_ITEMS = new DeserializationProblemHandler() {
+        @Override
+        public Object handleUnexpectedToken(DeserializationContext ctxt, JavaType targetType, JsonToken t,
+                                            JsonParser p, String failureMsg) {
+            return t == JsonToken.VALUE_NULL && targetType.hasRawClass(OrderRequest.class) ? null : NOT_HANDLED;
+        }
+    };
+
+    @Autowired
+    private Validator validator;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private OrderEventService orderEventService;
+
+    @Autowired
+    private OrderResponseRegistry orderResponseRegistry;
+
+    @Autowired
+    private IdGenerator idGenerator;
+
+    @Value("${order.batch.max-body-size:4MB}")
+    private DataSize maxBodySize;
+
+    @Value("${order.batch.max-items:1000}")
+    private int maxItems;
+
+    @Value("${order.batch.response-timeout:30s}")
+    private Duration responseTimeout;
+
+    public OrderBatchFilter() {
+        super(Config.class);
+    }
+
+    @Override
+    public GatewayFilter apply(Config config) {
+        return (exchange, chain) -> {
+            ServerHttpRequest request = exchange.getRequest();
+            int maxBytes = (int) maxBodySize.toBytes();
+            if (request.getHeaders().getContentLength() > maxBytes) {
+                return writeError(exchange, HttpStatus.PAYLOAD_TOO_LARGE, "Request body exceeds " + maxBytes + " bytes");
+            }
+
+            return DataBufferUtils.join(request.getBody(), maxBytes)
+                .defaultIfEmpty(DefaultDataBufferFactory.sharedInstance.wrap(new byte[0]))
+                .flatMap(dataBuffer -> {
+                    List<OrderRequest> orders = new ArrayList<>();
+                    // readValues unwraps a top-level array and equally accepts whitespace-separated
+                    // (NDJSON) root values, so both formats share one parser.
+                    try (InputStream body = dataBuffer.asInputStream(true);
+                         MappingIterator<OrderRequest> items = objectMapper.readerFor(OrderRequest.class)
+                             .withHandler(NULL_ITEMS).readValues(body)) {
+                        while (items.hasNextValue()) {
+                            if (orders.size() == maxItems) {
+                                return writeError(exchange, HttpStatus.PAYLOAD_TOO_LARGE, "Batch exceeds " + maxItems + " orders");
+                            }
+                            orders.add(items.nextValue());
+                        }
+                    } catch (Exception e) {
+                        logger.error("Error parsing order batch", e);
+                        return writeError(exchange, HttpStatus.BAD_REQUEST, "Malformed order batch");
+                    }
+
+                    if (orders.isEmpty()) {
+                        return writeError(exchange, HttpStatus.BAD_REQUEST, "Order batch is empty");
+                    }
+                    return submit(exchange, orders);
+                })
+                .onErrorResume(DataBufferLimitException.class,
+                    e -> writeError(exchange, HttpStatus.PAYLOAD_TOO_LARGE, "Request body exceeds " + maxBytes + " bytes"));
+        };
+    }
+
+    private Mono<Void> submit(ServerWebExchange exchange, List<OrderRequest> orders) {
+        ServerHttpResponse response = exchange.getResponse();
+        DataBufferFactory bufferFactory = response.bufferFactory();
+
+        List<Flux<JsonBody>> results = new ArrayList<>(orders.size());
+        Map<String, OrderRequest> accepted = new LinkedHashMap<>();
+        List<Integer> acceptedIndexes = new ArrayList<>();
+        List<Mono<Long>> replies = new ArrayList<>();
+
+        for (int i = 0; i < orders.size(); i++) {
+            int index = i;
+            OrderRequest order = orders.get(i);
+            if (order == null) {
+                results.add(Flux.just(itemError(index, "Order must not be null")));
+                continue;
+            }
+            Set<ConstraintViolation<OrderRequest>> violations = validator.validate(order);
+            if (!violations.isEmpty()) {
+                String message = violations.iterator().next().getMessage();
+                results.add(Flux.just(itemError(index, message)));
+                continue;
+            }
+            String correlationId = idGenerator.nextId();
+            replies.add(orderResponseRegistry.register(correlationId, responseTimeout));
+            accepted.put(correlationId, order);
+            acceptedIndexes.add(index);
+        }
+
+        List<String> correlationIds = new ArrayList<>(accepted.keySet());
+        List<Mono<SendResult<String, String>>> sends =
+            accepted.isEmpty() ? List.of() : orderEventService.publishOrderCreatedBatch(accepted);
+
+        for (int i = 0; i < sends.size(); i++) {
+            int index = acceptedIndexes.get(i);
+            String correlationId = correlationIds.get(i);
+            OrderRequest order = accepted.get(correlationId);
+            results.add(sends.get(i)
+                .then(replies.get(i))
+                .<JsonBody>map(orderId -> json -> {
+                    json.writeNumberField("index", index);
+                    json.writeNumberField("orderId", orderId);
+                    json.writeStringField("customerId", order.getCustomerId());
+                    json.writeStringField("productId", order.getProductId());
+                    json.writeNumberField("quantity", order.getQuantity());
+                    json.writeNumberField("amount", order.getAmount().setScale(2, RoundingMode.HALF_UP));
+                    json.writeStringField("status", "PENDING");
+                })
+                .defaultIfEmpty(json -> {
+                    json.writeNumberField("index", index);
+                    json.writeStringField("status", "PENDING");
+                    json.writeStringField("message", "Order is being processed");
+                })
+                .onErrorReturn(itemError(index, "Order could not be submitted"))
+                // No-op once the reply arrived; releases the entry on errors and cancellation.
+                .doFinally(signal -> orderResponseRegistry.cancel(correlationId))
+                .flux());
+        }
+
+        logger.info("Order batch received: {} items, {} accepted", orders.size(), accepted.size());
+        response.setStatusCode(HttpStatus.OK);
+        response.getHeaders().setContentType(MediaType.APPLICATION_NDJSON);
+        return response.writeAndFlushWith(Flux.merge(results)
+            .map(body -> Mono.just(JsonBuffers.line(objectMapper, bufferFactory, body))));
+    }
+
+    private JsonBody itemError(int index, String message) {
+        return json -> {
+            json.writeNumberField("index", index);
+            json.writeStringField("error", message);
+        };
+    }
+
+    private Mono<Void> writeError(ServerWebExchange exchange, HttpStatus status, String message) {
+        ServerHttpResponse response = exchange.getResponse();
+        response.setStatusCode(status);
+        response.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+        return response.writeWith(Mono.fromSupplier(() ->
+            JsonBuffers.object(objectMapper, response.bufferFactory(), json -> json.writeStringField("error", message))));
+    }
+
+    public static class Config {
+    }
+}
@@ -0,0 +1,166 @@
+package com.example.ordergateway.filter;
+
+import com.example.ordergateway.dto.OrderStatusEvent;
+import com.example.ordergateway.filter.JsonBuffers.JsonBody;
+import com.example.ordergateway.service.OrderStatusBroadcaster;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Handles GET /api/orders/{orderId}/events. Streams the order's status as Server-Sent Events:
+ * the current status first (one read from order-service), then every change published on
+ * order-status-events, closing the stream after a terminal status.
+ */
+@Component
+public class OrderStatusStreamFilter extends AbstractGatewayFilterFactory<OrderStatusStreamFilter.Config> {
+    private static final Logger logger = LoggerFactory.getLogger(OrderStatusStreamFilter.class);
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private OrderStatusBroadcaster orderStatusBroadcaster;
+
+    @Autowired
+    private WebClient.Builder webClientBuilder;
+
+    @Value("${order.events.order-service-url:http://order-service:8081}")
+    private String orderServiceUrl;
+
+    @Value("${order.events.terminal-statuses:COMPLETED,FAILED,CANCELLED,REFUNDED}")
+    private Set<String> terminalStatuses;
+
+    @Value("${order.events.heartbeat-interval:15s}")
+    private Duration heartbeatInterval;
+
+    @Value("${order.events.max-duration:10m}")
+    private Duration maxDuration;
+
+    private WebClient webClient;
+
+    public OrderStatusStreamFilter() {
+        super(Config.class);
+    }
+
+    @PostConstruct
+    public void init() {
+        this.webClient = webClientBuilder.baseUrl(orderServiceUrl).build();
+    }
+
+    @Override
+    public GatewayFilter apply(Config config) {
+        return (exchange, chain) -> {
+            Map<String, String> uriVariables = ServerWebExchangeUtils.getUriTemplateVariables(exchange);
+            Long orderId;
+            try {
+                orderId = Long.valueOf(uriVariables.get("orderId"));
+            } catch (NumberFormatException e) {
+                return writeError(exchange, HttpStatus.BAD_REQUEST, "Invalid order id");
+            }
+            if (!orderStatusBroadcaster.hasCapacity()) {
+                return writeError(exchange, HttpStatus.SERVICE_UNAVAILABLE, "Too many status streams. Please try again later.");
+            }
+
+            ServerHttpResponse response = exchange.getResponse();
+            DataBufferFactory bufferFactory = response.bufferFactory();
+
+            // Subscribe to live updates before reading the current status, and drop the snapshot
+            // if a live update overtook it, so a client never sees an older status last.
+            AtomicBoolean liveSeen = new AtomicBoolean(false);
+            Flux<OrderStatusEvent> updates = orderStatusBroadcaster.updates(orderId)
+                .doOnNext(event -> liveSeen.set(true));
+            Mono<OrderStatusEvent> snapshot = currentStatus(orderId)
+                .filter(event -> !liveSeen.get());
+
+            Sinks.Empty<Void> done = Sinks.empty();
+            Flux<DataBuffer> events = Flux.merge(updates, snapshot)
+                .takeUntil(event -> terminalStatuses.contains(event.getStatus()))
+                .take(maxDuration)
+                .map(event -> JsonBuffers.event(objectMapper, bufferFactory, "status", statusBody(event)))
+                .onErrorResume(OrderNotFoundException.class, e -> Mono.just(
+                    JsonBuffers.event(objectMapper, bufferFactory, "error", json -> json.writeStringField("error", "Order not found"))))
+                .onErrorResume(e -> {
+                    logger.error("Order status stream failed for order: {}", orderId, e);
+                    return Mono.just(JsonBuffers.event(objectMapper, bufferFactory, "error",
+                        json -> json.writeStringField("error", "Status stream unavailable")));
+                })
+                .doFinally(signal -> done.tryEmitEmpty());
+            Flux<DataBuffer> heartbeats = Flux.interval(heartbeatInterval)
+                .map(tick -> bufferFactory.wrap(": keepalive\n\n".getBytes(StandardCharsets.UTF_8)))
+                .takeUntilOther(done.asMono());
+
+            logger.info("Opening status stream for order: {}", orderId);
+            response.setStatusCode(HttpStatus.OK);
+            response.getHeaders().setContentType(MediaType.TEXT_EVENT_STREAM);
+            response.getHeaders().setCacheControl("no-cache");
+            return response.writeAndFlushWith(Flux.merge(events, heartbeats).map(Mono::just));
+        };
+    }
+
+    private Mono<OrderStatusEvent> currentStatus(Long orderId) {
+        return webClient.get()
+            .uri("/api/orders/{orderId}", orderId)
+            .retrieve()
+            .bodyToMono(JsonNode.class)
+            .map(order -> new OrderStatusEvent(orderId, order.get("status").asText(), null))
+            .onErrorResume(WebClientResponseException.NotFound.class, e -> Mono.error(new OrderNotFoundException()))
+            .onErrorResume(e -> !(e instanceof OrderNotFoundException), e -> {
+                // Live updates still flow; the client just misses the initial status.
+                logger.warn("Could not read current status of order: {}: {}", orderId, e.getMessage());
+                return Mono.empty();
+            });
+    }
+
+    private JsonBody statusBody(OrderStatusEvent event) {
+        return json -> {
+            json.writeNumberField("orderId", event.getOrderId());
+            json.writeStringField("status", event.getStatus());
+            if (event.getTimestamp() != null) {
+                json.writeStringField("timestamp", event.getTimestamp());
+            }
+        };
+    }
+
+    private Mono<Void> writeError(ServerWebExchange exchange, HttpStatus status, String message) {
+        ServerHttpResponse response = exchange.getResponse();
+        response.setStatusCode(status);
+        response.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+        return response.writeWith(Mono.fromSupplier(() ->
+            JsonBuffers.object(objectMapper, response.bufferFactory(), json -> json.writeStringField("error", message))));
+    }
+
+    private static final class OrderNotFoundException extends RuntimeException {
+        OrderNotFoundException() {
+            super(null, null, false, false);
+        }
+    }
+
+    public static class Config {
+    }
+}
@@ -1,26 +1,35 @@
 package com.example.ordergateway.filter;
 
 import com.example.ordergateway.dto.OrderRequest;
+import com.example.ordergateway.filter.JsonBuffers.JsonBody;
 import com.example.ordergateway.service.OrderEventService;
+import com.example.ordergateway.service.IdGenerator;
+import com.example.ordergateway.service.OrderResponseRegistry;
+import com.example.ordergateway.service.ReplyPartitionTracker;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.validation.ConstraintViolation;
 import jakarta.validation.Validator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cloud.gateway.filter.GatewayFilter;
 import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
-import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferLimitException;
 import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
 import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.server.ServerWebExchange;
 import reactor.core.publisher.Mono;
 
-import java.nio.charset.StandardCharsets;
+import java.io.InputStream;
+import java.math.RoundingMode;
 import java.util.Set;
-import java.util.concurrent.atomic.AtomicLong;
 
 @Component
 public class OrderValidationFilter extends AbstractGatewayFilterFactory<OrderValidationFilter.Config> {
@@ -36,6 +45,15 @@ public class OrderValidationFilter extends AbstractGatewayFilterFactory<OrderVal
     @Autowired
     private OrderEventService orderEventService;
 
+    @Autowired
+    private OrderResponseRegistry orderResponseRegistry;
+
+    @Autowired
+    private IdGenerator idGenerator;
+
+    @Value("${order.request.max-body-size:16KB}")
+    private DataSize maxBodySize;
+
     public OrderValidationFilter() {
         super(Config.class);
     }
@@ -44,91 +62,87 @@ public class OrderValidationFilter extends AbstractGatewayFilterFactory<OrderVal
     public GatewayFilter apply(Config config) {
         return (exchange, chain) -> {
             ServerHttpRequest request = exchange.getRequest();
-            
+
             if ("POST".equals(request.getMethod().name()) && request.getPath().value().equals("/api/orders")) {
-                return DataBufferUtils.join(exchange.getRequest().getBody())
+                int maxBytes = (int) maxBodySize.toBytes();
+                if (request.getHeaders().getContentLength() > maxBytes) {
+                    return writeError(exchange, HttpStatus.PAYLOAD_TOO_LARGE, "Request body exceeds " + maxBytes + " bytes");
+                }
+
+                return DataBufferUtils.join(request.getBody(), maxBytes)
+                    .defaultIfEmpty(DefaultDataBufferFactory.sharedInstance.wrap(new byte[0]))
                     .flatMap(dataBuffer -> {
-                        byte[] bytes = new byte[dataBuffer.readableByteCount()];
-                        dataBuffer.read(bytes);
-                        DataBufferUtils.release(dataBuffer);
-                        String body = new String(bytes, StandardCharsets.UTF_8);
-                        
-                        try {
-                            OrderRequest orderRequest = objectMapper.readValue(body, OrderRequest.class);
-                            Set<ConstraintViolation<OrderRequest>> violations = validator.validate(orderRequest);
-                            
-                            if (!violations.isEmpty()) {
-                                String errorMessage = violations.iterator().next().getMessage();
-                                exchange.getResponse().setStatusCode(HttpStatus.BAD_REQUEST);
-                                exchange.getResponse().getHeaders().setContentType(MediaType.APPLICATION_JSON);
-                                byte[] errorBytes = ("{\"error\":\"" + errorMessage + "\"}").getBytes(StandardCharsets.UTF_8);
-                                DataBuffer buffer = exchange.getResponse().bufferFactory().wrap(errorBytes);
-                                return exchange.getResponse().writeWith(Mono.just(buffer));
-                            }
-                            
-                            String correlationId = java.util.UUID.randomUUID().toString();
-                            orderEventService.publishOrderCreatedAndWait(orderRequest, correlationId);
-                            
-                            Long orderId = waitForOrderResponse(correlationId);
-                            
-                            String response;
-                            if (orderId != null) {
-                                response = String.format("{\"orderId\":%d,\"customerId\":\"%s\",\"productId\":\"%s\",\"quantity\":%d,\"amount\":%.2f,\"status\":\"PENDING\"}",
-                                    orderId, orderRequest.getCustomerId(), orderRequest.getProductId(), 
-                                    orderRequest.getQuantity(), orderRequest.getAmount());
-                            } else {
-                                response = "{\"status\":\"PENDING\",\"message\":\"Order is being processed\"}";
-                            }
-                            
-                            exchange.getResponse().setStatusCode(HttpStatus.OK);
-                            exchange.getResponse().getHeaders().setContentType(MediaType.APPLICATION_JSON);
-                            byte[] responseBytes = response.getBytes(StandardCharsets.UTF_8);
-                            DataBuffer responseBuffer = exchange.getResponse().bufferFactory().wrap(responseBytes);
-                            return exchange.getResponse().writeWith(Mono.just(responseBuffer));
-                            
+                        OrderRequest orderRequest;
+                        try (InputStream body = dataBuffer.asInputStream(true)) {
+                            orderRequest = objectMapper.readValue(body, OrderRequest.class);
                         } catch (Exception e) {
                             logger.error("Error processing order request", e);
-                            exchange.getResponse().setStatusCode(HttpStatus.BAD_REQUEST);
-                            return exchange.getResponse().setComplete();
+                            return writeError(exchange, HttpStatus.BAD_REQUEST, "Malformed order request");
+                        }
+
+                        Set<ConstraintViolation<OrderRequest>> violations = validator.validate(orderRequest);
+                        if (!violations.isEmpty()) {
+                            return writeError(exchange, HttpStatus.BAD_REQUEST, violations.iterator().next().getMessage());
                         }
-                    });
+
+                        String correlationId = idGenerator.nextId();
+                        Mono<Long> orderResponse = orderResponseRegistry.register(correlationId);
+
+                        String idempotencyKey = exchange.getAttribute(IdempotencyFilter.IDEMPOTENCY_KEY_ATTR);
+                        return orderEventService.publishOrderCreated(orderRequest, correlationId, idempotencyKey)
+                            .then(orderResponse)
+                            .<JsonBody>map(orderId -> json -> {
+                                json.writeNumberField("orderId", orderId);
+                                json.writeStringField("customerId", orderRequest.getCustomerId());
+                                json.writeStringField("productId", orderRequest.getProductId());
+                                json.writeNumberField("quantity", orderRequest.getQuantity());
+                                json.writeNumberField("amount", orderRequest.getAmount().setScale(2, RoundingMode.HALF_UP));
+                                json.writeStringField("status", "PENDING");
+                            })
+                            .switchIfEmpty(Mono.fromSupplier(() -> {
+                                // No orderId to hand out yet; don't let it be replayed for the full idempotency TTL.
+                                exchange.getAttributes().put(IdempotencyFilter.PROVISIONAL_RESPONSE_ATTR, true);
+                                return json -> {
+                                    json.writeStringField("status", "PENDING");
+                                    json.writeStringField("message", "Order is being processed");
+                                };
+                            }))
+                            .flatMap(body -> writeJson(exchange, HttpStatus.OK, body))
+                            .onErrorResume(e -> writeError(exchange, HttpStatus.SERVICE_UNAVAILABLE, "Order could not be submitted. Please try again later."))
+                            // No-op once the reply arrived; releases the entry on errors and cancellation.
+                            .doFinally(signal -> orderResponseRegistry.cancel(correlationId));
+                    })
+                    .onErrorResume(DataBufferLimitException.class,
+                        e -> writeError(exchange, HttpStatus.PAYLOAD_TOO_LARGE, "Request body exceeds " + maxBytes + " bytes"));
             }
-            
+
             return chain.filter(exchange);
         };
     }
 
-    private final java.util.concurrent.ConcurrentHashMap<String, Long> pendingOrders = new java.util.concurrent.ConcurrentHashMap<>();
-
-    @org.springframework.kafka.annotation.KafkaListener(topics = "order-response", groupId = "gateway-group")
+    @org.springframework.kafka.annotation.KafkaListener(topics = ReplyPartitionTracker.REPLY_TOPIC, groupId = "gateway-group",
+        containerFactory = "orderResponseListenerContainerFactory")
     public void handleOrderResponse(String message) {
         try {
             com.fasterxml.jackson.databind.JsonNode response = objectMapper.readTree(message);
             String correlationId = response.get("correlationId").asText();
             Long orderId = response.get("orderId").asLong();
-            pendingOrders.put(correlationId, orderId);
             logger.info("Received order response: orderId={}, correlationId={}", orderId, correlationId);
+            orderResponseRegistry.complete(correlationId, orderId);
         } catch (Exception e) {
             logger.error("Error processing order response", e);
         }
     }
 
-    private Long waitForOrderResponse(String correlationId) {
-        int attempts = 0;
-        while (attempts < 20) {
-            Long orderId = pendingOrders.remove(correlationId);
-            if (orderId != null) {
-                return orderId;
-            }
-            try {
-                Thread.sleep(100);
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                break;
-            }
-            attempts++;
-        }
-        return null;
+    private Mono<Void> writeError(ServerWebExchange exchange, HttpStatus status, String message) {
+        return writeJson(exchange, status, json -> json.writeStringField("error", message));
+    }
+
+    private Mono<Void> writeJson(ServerWebExchange exchange, HttpStatus status, JsonBody body) {
+        ServerHttpResponse response = exchange.getResponse();
+        response.setStatusCode(status);
+        response.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+        return response.writeWith(Mono.fromSupplier(() -> JsonBuffers.object(objectMapper, response.bufferFactory(), body)));
     }
 
     public static class Config {
@@ -0,0 +1,211 @@
+package com.example.ordergateway.filter;
+
+import com.example.ordergateway.filter.ResponseCaptureFilter.ResponseCapture;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+import reactor.core.publisher.Sinks;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Short-lived cache for GET reads on proxied routes. Concurrent GETs by the same user for the
+ * same URL share one upstream call (single flight), and successful responses are kept for
+ * {@code read-cache.ttl}, or {@code read-cache.terminal-ttl} once the body reports a terminal
+ * status. Any other method on the route (e.g. POST /api/orders/{id}/cancel) invalidates the
+ * cached reads of that resource for every user.
+ */
+@Component
+public class ReadCacheFilter extends AbstractGatewayFilterFactory<ReadCacheFilter.Config> {
+    private static final Logger logger = LoggerFactory.getLogger(ReadCacheFilter.class);
+
+    public static final String CACHE_HEADER = "X-Cache";
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${read-cache.ttl:1s}")
+    private Duration ttl;
+
+    @Value("${read-cache.terminal-ttl:10s}")
+    private Duration terminalTtl;
+
+    @Value("${read-cache.terminal-statuses:COMPLETED,FAILED,CANCELLED,REFUNDED}")
+    private Set<String> terminalStatuses;
+
+    @Value("${read-cache.max-entries:10000}")
+    private int maxEntries;
+
+    @Value("${read-cache.coalesce-timeout:5s}")
+    private Duration coalesceTimeout;
+
+    private final Map<CacheKey, CachedResponse> cache = new ConcurrentHashMap<>();
+    private final Map<CacheKey, Sinks.One<CachedResponse>> inFlight = new ConcurrentHashMap<>();
+
+    public ReadCacheFilter() {
+        super(Config.class);
+    }
+
+    @PostConstruct
+    public void registerMetrics() {
+        meterRegistry.gaugeMapSize("gateway_read_cache_entries", Tags.empty(), cache);
+    }
+
+    @Override
+    public GatewayFilter apply(Config config) {
+        // Runs in its place on the route, after the rate limiter, so cached and coalesced reads are
+        // rate limited too; ResponseCaptureFilter hands it the proxied body of a miss.
+        return (exchange, chain) -> {
+            ServerHttpRequest request = exchange.getRequest();
+            String path = request.getPath().value();
+
+            if (request.getMethod() != HttpMethod.GET) {
+                invalidate(exchange, path);
+                return chain.filter(exchange).doFinally(signal -> invalidate(exchange, path));
+            }
+            // Responses are per user: one user's read is never served to another.
+            String user = exchange.getAttribute(JwtAuthenticationFilter.USERNAME_ATTR);
+            CacheKey key = new CacheKey(user != null ? user : "anonymous", path, request.getURI().getRawQuery());
+
+            CachedResponse cached = cache.get(key);
+            if (cached != null && cached.expiresAt() - System.nanoTime() > 0) {
+                count(exchange, "gateway_read_cache_hits");
+                return write(exchange, cached, "HIT");
+            }
+
+            Sinks.One<CachedResponse> flight = Sinks.one();
+            Sinks.One<CachedResponse> leader = inFlight.putIfAbsent(key, flight);
+            if (leader != null) {
+                count(exchange, "gateway_read_cache_coalesced");
+                return leader.asMono()
+                    .timeout(coalesceTimeout)
+                    .map(Optional::of)
+                    .onErrorReturn(Optional.empty())
+                    .flatMap(response -> response.isPresent()
+                        ? write(exchange, response.get(), "COALESCED")
+                        : chain.filter(exchange));
+            }
+
+            count(exchange, "gateway_read_cache_misses");
+            ResponseCaptureFilter.capture(exchange, new ResponseCapture() {
+                @Override
+                public Mono<Void> captured(ServerHttpResponse response, HttpStatusCode status, byte[] body) {
+                    MediaType contentType = response.getHeaders().getContentType();
+                    CachedResponse captured = new CachedResponse(status, contentType, body, expiresAt(contentType, body));
+                    if (status.value() == HttpStatus.OK.value()) {
+                        store(key, captured);
+                    }
+                    flight.tryEmitValue(captured);
+                    response.getHeaders().set(CACHE_HEADER, "MISS");
+                    return Mono.empty();
+                }
+
+                @Override
+                public void finished(SignalType signal) {
+                    inFlight.remove(key, flight);
+                    // No-op if the response was captured; otherwise waiters go upstream themselves.
+                    flight.tryEmitError(new IllegalStateException("No response captured for " + key));
+                }
+            });
+            return chain.filter(exchange);
+        };
+    }
+
+    private long expiresAt(MediaType contentType, byte[] body) {
+        Duration timeToLive = ttl;
+        if (contentType != null && contentType.isCompatibleWith(MediaType.APPLICATION_JSON)) {
+            try {
+                JsonNode status = objectMapper.readTree(body).get("status");
+                if (status != null && terminalStatuses.contains(status.asText())) {
+                    timeToLive = terminalTtl;
+                }
+            } catch (IOException e) {
+                logger.debug("Could not read status from cached response body: {}", e.getMessage());
+            }
+        }
+        return System.nanoTime() + timeToLive.toNanos();
+    }
+
+    private void store(CacheKey key, CachedResponse response) {
+        if (cache.size() >= maxEntries) {
+            long now = System.nanoTime();
+            cache.values().removeIf(entry -> entry.expiresAt() - now <= 0);
+            if (cache.size() >= maxEntries) {
+                return;
+            }
+        }
+        cache.put(key, response);
+    }
+
+    // A write to /api/orders/42/cancel invalidates reads of /api/orders/42 (and anything below it).
+    private void invalidate(ServerWebExchange exchange, String path) {
+        int removed = 0;
+        for (CacheKey key : cache.keySet()) {
+            String cachedPath = key.path();
+            if ((path.equals(cachedPath) || path.startsWith(cachedPath + "/") || cachedPath.startsWith(path + "/"))
+                    && cache.remove(key) != null) {
+                removed++;
+            }
+        }
+        if (removed > 0) {
+            meterRegistry.counter("gateway_read_cache_invalidations", "route", routeId(exchange)).increment(removed);
+            logger.debug("Invalidated {} cached read(s) for {}", removed, path);
+        }
+    }
+
+    private Mono<Void> write(ServerWebExchange exchange, CachedResponse cached, String cacheStatus) {
+        ServerHttpResponse response = exchange.getResponse();
+        response.setStatusCode(cached.status());
+        if (cached.contentType() != null) {
+            response.getHeaders().setContentType(cached.contentType());
+        }
+        response.getHeaders().set(CACHE_HEADER, cacheStatus);
+        return response.writeWith(Mono.fromSupplier(() -> response.bufferFactory().wrap(cached.body())));
+    }
+
+    private void count(ServerWebExchange exchange, String name) {
+        meterRegistry.counter(name, "route", routeId(exchange)).increment();
+    }
+
+    private String routeId(ServerWebExchange exchange) {
+        Route route = exchange.getAttribute(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR);
+        return route != null ? route.getId() : "unknown";
+    }
+
+    private record CacheKey(String user, String path, String query) {
+    }
+
+    private record CachedResponse(HttpStatusCode status, MediaType contentType, byte[] body, long expiresAt) {
+    }
+
+    public static class Config {
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.ordergateway.filter;
+
+import org.reactivestreams.Publisher;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.cloud.gateway.filter.NettyWriteResponseFilter;
+import org.springframework.core.Ordered;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Lets route filters see the response body, including proxied bodies, without running ahead
+ * of the rest of the route. NettyWriteResponseFilter writes the proxied body to the response
+ * of the exchange it was given, after the route filters have completed, so only a filter
+ * ordered before it can decorate that response or tell when it has been written. This filter
+ * installs the decorator for every request; it only buffers the body once a route filter has
+ * registered a {@link ResponseCapture} with {@link #capture}.
+ */
+@Component
+public class ResponseCaptureFilter implements GlobalFilter, Ordered {
+
+    private static final String CAPTURES_ATTR = "responseCaptures";
+
+    public interface ResponseCapture {
+        /**
+         * Called with the complete body before it is written. Headers may still be changed; the
+         * returned Mono must complete before the body goes out.
+         */
+        Mono<Void> captured(ServerHttpResponse response, HttpStatusCode status, byte[] body);
+
+        /**
+         * Called once the response has been written or the exchange has failed or been cancelled,
+         * whether or not a body was captured.
+         */
+        default void finished(SignalType signal) {
+        }
+    }
+
+    // Captures registered by several filters on one request run in registration order.
+    public static void capture(ServerWebExchange exchange, ResponseCapture capture) {
+        List<ResponseCapture> captures = exchange.getAttribute(CAPTURES_ATTR);
+        if (captures == null) {
+            captures = new ArrayList<>(1);
+            exchange.getAttributes().put(CAPTURES_ATTR, captures);
+        }
+        captures.add(capture);
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        ServerHttpResponseDecorator capturing = new ServerHttpResponseDecorator(exchange.getResponse()) {
+            @Override
+            public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
+                List<ResponseCapture> captures = exchange.getAttribute(CAPTURES_ATTR);
+                if (captures == null) {
+                    return super.writeWith(body);
+                }
+                return DataBufferUtils.join(body)
+                    .map(buffer -> {
+                        byte[] bytes = new byte[buffer.readableByteCount()];
+                        buffer.read(bytes);
+                        DataBufferUtils.release(buffer);
+                        return bytes;
+                    })
+                    .defaultIfEmpty(new byte[0])
+                    .flatMap(bytes -> {
+                        HttpStatusCode status = getStatusCode() != null ? getStatusCode() : HttpStatus.OK;
+                        return Flux.fromIterable(captures)
+                            .concatMap(capture -> capture.captured(this, status, bytes))
+                            .then(super.writeWith(Mono.just(bufferFactory().wrap(bytes))));
+                    });
+            }
+        };
+        return chain.filter(exchange.mutate().response(capturing).build())
+            .doFinally(signal -> {
+                List<ResponseCapture> captures = exchange.getAttribute(CAPTURES_ATTR);
+                if (captures != null) {
+                    captures.forEach(capture -> capture.finished(signal));
+                }
+            });
+    }
+
+    @Override
+    public int getOrder() {
+        return NettyWriteResponseFilter.WRITE_RESPONSE_FILTER_ORDER - 1;
+    }
+}
@@ -0,0 +1,236 @@
+package com.example.ordergateway.filter;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.OrderedGatewayFilter;
+import org.springframework.cloud.gateway.filter.RouteToRequestUrlFilter;
+import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
+import org.springframework.cloud.gateway.support.HasRouteId;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+import reactor.netty.Connection;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeoutException;
+import java.util.function.LongSupplier;
+
+/**
+ * Retries failed upstream calls only while retries stay under {@code budgetRatio} of the
+ * route's successful requests over the last {@code window} (plus a small floor of
+ * {@code minRetriesPerSecond} for quiet routes), so a brownout is not multiplied by the retry
+ * count. Methods that are not idempotent are retried only when the client sent an
+ * Idempotency-Key that IdempotencyFilter has handled. Responses already written by a gateway
+ * filter (fallbacks, load shedding, validation errors) are never retried.
+ */
+@Component
+public class RetryBudgetFilter extends AbstractGatewayFilterFactory<RetryBudgetFilter.Config> {
+    private static final Logger logger = LoggerFactory.getLogger(RetryBudgetFilter.class);
+
+    public static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+
+    private static final Set<HttpMethod> IDEMPOTENT_METHODS = Set.of(
+        HttpMethod.GET, HttpMethod.HEAD, HttpMethod.OPTIONS, HttpMethod.PUT, HttpMethod.DELETE, HttpMethod.TRACE);
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final Map<String, RetryBudget> budgets = new ConcurrentHashMap<>();
+
+    public RetryBudgetFilter() {
+        super(Config.class);
+    }
+
+    @Override
+    public GatewayFilter apply(Config config) {
+        String routeId = config.getRouteId() != null ? config.getRouteId() : "unknown";
+        RetryBudget budget = budgets.computeIfAbsent(routeId, id -> new RetryBudget(config));
+        // Ordered after every route filter, so a retry only repeats the upstream call: the rate
+        // limiter, IdempotencyFilter, the concurrency limiter and the circuit breaker see one request.
+        return new OrderedGatewayFilter((exchange, chain) -> {
+            // A POST is retried only once IdempotencyFilter has taken it: its key makes a repeat
+            // safe, and its body has been read (within the size cap) and can be sent again.
+            boolean retryable = IDEMPOTENT_METHODS.contains(exchange.getRequest().getMethod())
+                || exchange.getAttribute(IdempotencyFilter.IDEMPOTENCY_KEY_ATTR) != null;
+            return attempt(exchange, chain, config, budget, routeId, retryable, 0);
+        }, RouteToRequestUrlFilter.ROUTE_TO_URL_FILTER_ORDER - 1);
+    }
+
+    private Mono<Void> attempt(ServerWebExchange exchange, GatewayFilterChain chain, Config config,
+                               RetryBudget budget, String routeId, boolean retryable, int iteration) {
+        return chain.filter(exchange)
+            .then(Mono.<Throwable>empty())
+            .onErrorResume(Mono::just)
+            .map(Optional::of)
+            .defaultIfEmpty(Optional.empty())
+            .flatMap(error -> {
+                HttpStatusCode status = exchange.getResponse().getStatusCode();
+                boolean failed = error.isPresent() ? isRetryableError(error.get()) : isRetryableStatus(status, config);
+                if (!failed) {
+                    if (error.isEmpty() && (status == null || !status.is5xxServerError())) {
+                        budget.recordSuccess();
+                    }
+                    return complete(error);
+                }
+
+                if (iteration >= config.getRetries() || exchange.getResponse().isCommitted()) {
+                    return complete(error);
+                }
+                if (!retryable) {
+                    meterRegistry.counter("gateway_retry_skipped_non_idempotent", "route", routeId).increment();
+                    return complete(error);
+                }
+                if (!budget.tryWithdraw()) {
+                    meterRegistry.counter("gateway_retry_budget_exhausted", "route", routeId).increment();
+                    logger.warn("Retry budget exhausted for route {}, not retrying {} {}", routeId,
+                        exchange.getRequest().getMethod(), exchange.getRequest().getPath());
+                    return complete(error);
+                }
+
+                meterRegistry.counter("gateway_retries", "route", routeId).increment();
+                logger.debug("Retrying {} {} on route {} (attempt {}) after {}", exchange.getRequest().getMethod(),
+                    exchange.getRequest().getPath(), routeId, iteration + 2,
+                    error.map(Throwable::toString).orElse("status " + status));
+                return Mono.delay(backoff(config, iteration))
+                    .then(Mono.defer(() -> {
+                        reset(exchange);
+                        return attempt(exchange, chain, config, budget, routeId, true, iteration + 1);
+                    }));
+            });
+    }
+
+    private Mono<Void> complete(Optional<Throwable> error) {
+        return error.isPresent() ? Mono.error(error.get()) : Mono.empty();
+    }
+
+    private boolean isRetryableStatus(HttpStatusCode status, Config config) {
+        return status != null && config.getStatuses().stream().anyMatch(retryable -> retryable.value() == status.value());
+    }
+
+    private boolean isRetryableError(Throwable error) {
+        return error instanceof IOException || error instanceof TimeoutException;
+    }
+
+    private Duration backoff(Config config, int iteration) {
+        long delay = (long) (config.getFirstBackoff().toMillis() * Math.pow(config.getFactor(), iteration));
+        return Duration.ofMillis(Math.min(delay, config.getMaxBackoff().toMillis()));
+    }
+
+    // Same clean-up the built-in Retry filter does between attempts.
+    private void reset(ServerWebExchange exchange) {
+        Connection connection = exchange.getAttribute(ServerWebExchangeUtils.CLIENT_RESPONSE_CONN_ATTR);
+        if (connection != null) {
+            connection.dispose();
+            exchange.getAttributes().remove(ServerWebExchangeUtils.CLIENT_RESPONSE_CONN_ATTR);
+        }
+        ServerWebExchangeUtils.reset(exchange);
+    }
+
+    /**
+     * Counts successes and retries per second over a sliding window.
+     */
+    static final class RetryBudget {
+        private final LongSupplier clock;
+        private final double ratio;
+        private final double minRetriesPerSecond;
+        private final int windowSeconds;
+
+        // Guarded by this; indexed by epoch second modulo the window.
+        private final long[] slotSecond;
+        private final long[] successes;
+        private final long[] retries;
+
+        RetryBudget(Config config) {
+            this(config, System::currentTimeMillis);
+        }
+
+        RetryBudget(Config config, LongSupplier clock) {
+            this.clock = clock;
+            this.ratio = config.getBudgetRatio();
+            this.minRetriesPerSecond = config.getMinRetriesPerSecond();
+            this.windowSeconds = (int) Math.max(1, config.getWindow().toSeconds());
+            this.slotSecond = new long[windowSeconds];
+            this.successes = new long[windowSeconds];
+            this.retries = new long[windowSeconds];
+        }
+
+        synchronized void recordSuccess() {
+            successes[slot(clock.getAsLong() / 1000)]++;
+        }
+
+        synchronized boolean tryWithdraw() {
+            long now = clock.getAsLong() / 1000;
+            int current = slot(now);
+            long recentSuccesses = 0;
+            long recentRetries = 0;
+            for (int i = 0; i < windowSeconds; i++) {
+                if (now - slotSecond[i] < windowSeconds) {
+                    recentSuccesses += successes[i];
+                    recentRetries += retries[i];
+                }
+            }
+            if (recentRetries + 1 > ratio * recentSuccesses + minRetriesPerSecond * windowSeconds) {
+                return false;
+            }
+            retries[current]++;
+            return true;
+        }
+
+        private int slot(long second) {
+            int index = (int) (second % windowSeconds);
+            if (slotSecond[index] != second) {
+                slotSecond[index] = second;
+                successes[index] = 0;
+                retries[index] = 0;
+            }
+            return index;
+        }
+    }
+
+    public static class Config implements HasRouteId {
+        private String routeId;
+        private int retries = 3;
+        private List<HttpStatus> statuses = List.of(HttpStatus.BAD_GATEWAY, HttpStatus.SERVICE_UNAVAILABLE);
+        private double budgetRatio = 0.1;
+        private double minRetriesPerSecond = 1;
+        private Duration window = Duration.ofSeconds(10);
+        private Duration firstBackoff = Duration.ofMillis(50);
+        private Duration maxBackoff = Duration.ofMillis(500);
+        private double factor = 2;
+
+        @Override
+        public String getRouteId() { return routeId; }
+        @Override
+        public void setRouteId(String routeId) { this.routeId = routeId; }
+        public int getRetries() { return retries; }
+        public void setRetries(int retries) { this.retries = retries; }
+        public List<HttpStatus> getStatuses() { return statuses; }
+        public void setStatuses(List<HttpStatus> statuses) { this.statuses = statuses; }
+        public double getBudgetRatio() { return budgetRatio; }
+        public void setBudgetRatio(double budgetRatio) { this.budgetRatio = budgetRatio; }
+        public double getMinRetriesPerSecond() { return minRetriesPerSecond; }
+        public void setMinRetriesPerSecond(double minRetriesPerSecond) { this.minRetriesPerSecond = minRetriesPerSecond; }
+        public Duration getWindow() { return window; }
+        public void setWindow(Duration window) { this.window = window; }
+        public Duration getFirstBackoff() { return firstBackoff; }
+        public void setFirstBackoff(Duration firstBackoff) { this.firstBackoff = firstBackoff; }
+        public Duration getMaxBackoff() { return maxBackoff; }
+        public void setMaxBackoff(Duration maxBackoff) { this.maxBackoff = maxBackoff; }
+        public double getFactor() { return factor; }
+        public void setFactor(double factor) { this.factor = factor; }
+    }
+}
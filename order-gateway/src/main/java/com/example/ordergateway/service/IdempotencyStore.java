@@ -0,0 +1,134 @@
+package com.example.ordergateway.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Records Idempotency-Key usage in Redis. A key is claimed with SET NX while its request is in
+ * flight and then overwritten with the first response, which is kept for {@code idempotency.ttl}
+ * ({@code idempotency.provisional-ttl} for a response that does not carry the outcome yet).
+ * New keys cost one round trip (the claim); only a repeat pays for a second one to read the
+ * stored response.
+ */
+@Service
+public class IdempotencyStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(IdempotencyStore.class);
+    private static final String KEY_PREFIX = "idempotency.";
+
+    private final ReactiveStringRedisTemplate redisTemplate;
+    private final ObjectMapper objectMapper;
+    private final Duration ttl;
+    private final Duration provisionalTtl;
+    private final Duration lockTtl;
+    private final Duration redisTimeout;
+    private final Counter redisErrors;
+
+    public IdempotencyStore(ReactiveStringRedisTemplate redisTemplate,
+                            ObjectMapper objectMapper,
+                            MeterRegistry meterRegistry,
+                            @Value("${idempotency.ttl:24h}") Duration ttl,
+                            @Value("${idempotency.provisional-ttl:30s}") Duration provisionalTtl,
+                            @Value("${idempotency.lock-ttl:30s}") Duration lockTtl,
+                            @Value("${idempotency.redis-timeout:250ms}") Duration redisTimeout) {
+        this.redisTemplate = redisTemplate;
+        this.objectMapper = objectMapper;
+        this.ttl = ttl;
+        this.provisionalTtl = provisionalTtl;
+        this.lockTtl = lockTtl;
+        this.redisTimeout = redisTimeout;
+        this.redisErrors = meterRegistry.counter("idempotency_redis_errors");
+    }
+
+    /**
+     * Claims the key for a new request. Completes empty when the caller owns the key and should
+     * process the request, or with the record left by an earlier request using the same key.
+     * If Redis is unavailable the request is let through unclaimed.
+     */
+    public Mono<Optional<IdempotencyRecord>> claim(String key, String fingerprint) {
+        return acquire(key, fingerprint)
+            .timeout(redisTimeout)
+            .onErrorResume(e -> {
+                redisErrors.increment();
+                logger.warn("Idempotency check unavailable for key {}, processing without it: {}", key, e.toString());
+                return Mono.just(Optional.empty());
+            });
+    }
+
+    /**
+     * Stores the response of the request that owns the key, replacing the in-flight claim.
+     */
+    public Mono<Void> complete(String key, IdempotencyRecord record) {
+        return store(key, record, ttl);
+    }
+
+    /**
+     * Stores a response that does not carry the outcome yet (e.g. an order still PENDING without
+     * its orderId) only briefly, so a later retry with the key is processed again instead of
+     * being answered with it for the whole {@code idempotency.ttl}.
+     */
+    public Mono<Void> completeProvisional(String key, IdempotencyRecord record) {
+        return store(key, record, provisionalTtl);
+    }
+
+    private Mono<Void> store(String key, IdempotencyRecord record, Duration ttl) {
+        return Mono.fromCallable(() -> objectMapper.writeValueAsString(record))
+            .flatMap(json -> redisTemplate.opsForValue().set(KEY_PREFIX + key, json, ttl))
+            .timeout(redisTimeout)
+            .doOnError(e -> {
+                redisErrors.increment();
+                logger.warn("Could not store response for idempotency key {}: {}", key, e.toString());
+            })
+            .onErrorComplete()
+            .then();
+    }
+
+    /**
+     * Drops the claim so the client can retry, e.g. after a 5xx.
+     */
+    public Mono<Void> release(String key) {
+        return redisTemplate.delete(KEY_PREFIX + key)
+            .timeout(redisTimeout)
+            .doOnError(e -> {
+                redisErrors.increment();
+                logger.warn("Could not release idempotency key {}: {}", key, e.toString());
+            })
+            .onErrorComplete()
+            .then();
+    }
+
+    private Mono<Optional<IdempotencyRecord>> acquire(String key, String fingerprint) {
+        return Mono.fromCallable(() -> objectMapper.writeValueAsString(IdempotencyRecord.inProgress(fingerprint)))
+            .flatMap(json -> redisTemplate.opsForValue().setIfAbsent(KEY_PREFIX + key, json, lockTtl))
+            .flatMap(acquired -> {
+                if (acquired) {
+                    return Mono.just(Optional.<IdempotencyRecord>empty());
+                }
+                // Someone else holds the key; if it expired in between, report it as still in progress.
+                return lookup(key)
+                    .defaultIfEmpty(IdempotencyRecord.inProgress(fingerprint))
+                    .map(Optional::of);
+            });
+    }
+
+    private Mono<IdempotencyRecord> lookup(String key) {
+        return redisTemplate.opsForValue().get(KEY_PREFIX + key)
+            .flatMap(json -> Mono.fromCallable(() -> objectMapper.readValue(json, IdempotencyRecord.class)));
+    }
+
+    public record IdempotencyRecord(String fingerprint, boolean completed, int status, String contentType, byte[] body) {
+        static IdempotencyRecord inProgress(String fingerprint) {
+            return new IdempotencyRecord(fingerprint, false, 0, null, null);
+        }
+    }
+}
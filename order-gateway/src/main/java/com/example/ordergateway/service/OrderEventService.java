@@ -3,16 +3,36 @@ package com.example.ordergateway.service;
 import com.example.ordergateway.dto.OrderRequest;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.kafka.KafkaProperties;
+import org.springframework.boot.ssl.SslBundles;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
 import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.kafka.support.SendResult;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Service
 public class OrderEventService {
@@ -26,30 +46,169 @@ public class OrderEventService {
     @Autowired
     private ObjectMapper objectMapper;
 
-    public Long publishOrderCreatedAndWait(OrderRequest request, String correlationId) {
+    @Autowired
+    private ReplyPartitionTracker replyPartitionTracker;
+
+    @Autowired
+    private IdGenerator idGenerator;
+
+    // Separate producer for batch submissions: a longer linger lets a whole batch share
+    // a handful of compressed produce requests without delaying single-order traffic.
+    private final DefaultKafkaProducerFactory<String, String> batchProducerFactory;
+    private final KafkaTemplate<String, String> batchKafkaTemplate;
+
+    private final int maxInFlight;
+    private final AtomicInteger inFlight = new AtomicInteger(0);
+    private final Counter rejectedCounter;
+
+    public OrderEventService(MeterRegistry meterRegistry,
+                             KafkaProperties kafkaProperties,
+                             SslBundles sslBundles,
+                             @Value("${order.publish.max-in-flight:10000}") int maxInFlight,
+                             @Value("${order.batch.linger-ms:20}") int batchLingerMs,
+                             @Value("${order.batch.producer-batch-size:262144}") int batchSize) {
+        this.maxInFlight = maxInFlight;
+        meterRegistry.gauge("order_publish_inflight", inFlight);
+        this.rejectedCounter = meterRegistry.counter("order_publish_rejected");
+
+        Map<String, Object> batchProducerProps = kafkaProperties.buildProducerProperties(sslBundles);
+        batchProducerProps.put(ProducerConfig.LINGER_MS_CONFIG, batchLingerMs);
+        batchProducerProps.put(ProducerConfig.BATCH_SIZE_CONFIG, batchSize);
+        batchProducerProps.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, "lz4");
+        this.batchProducerFactory = new DefaultKafkaProducerFactory<>(batchProducerProps);
+        this.batchKafkaTemplate = new KafkaTemplate<>(batchProducerFactory);
+    }
+
+    /**
+     * Publishes an OrderCreated event without blocking the caller. KafkaTemplate.send can block for
+     * up to max.block.ms (metadata fetch, full buffer), so it runs on the bounded elastic scheduler
+     * rather than the event loop. The returned Mono completes with the broker acknowledgement, or
+     * errors when the send fails or too many sends are already in flight. The event's idempotencyKey
+     * is derived from the client's Idempotency-Key when one was given, so repeats of a request carry
+     * the same key.
+     */
+    public Mono<SendResult<String, String>> publishOrderCreated(OrderRequest request, String correlationId, String clientIdempotencyKey) {
+        return Mono.fromCallable(() -> {
+                ProducerRecord<String, String> record;
+                try {
+                    record = buildOrderCreatedRecord(request, correlationId, clientIdempotencyKey);
+                } catch (JsonProcessingException e) {
+                    logger.error("Error serializing order event", e);
+                    throw e;
+                }
+                if (!tryAcquire(1)) {
+                    throw new IllegalStateException("Too many order events in flight");
+                }
+                return send(kafkaTemplate, record);
+            })
+            .subscribeOn(Schedulers.boundedElastic())
+            // A cancelled subscriber does not cancel the send; its permit is released when the send completes.
+            .flatMap(future -> Mono.fromFuture(future, true))
+            .doOnSuccess(result -> logger.info("Published OrderCreated event, correlationId: {}", correlationId))
+            .doOnError(e -> logger.error("Error publishing order event, correlationId: {}", correlationId, e));
+    }
+
+    /**
+     * Publishes a batch of OrderCreated events in one tight loop through the batch producer,
+     * so they are grouped into as few produce requests as linger and batch size allow. The loop
+     * starts right away on the bounded elastic scheduler, off the event loop.
+     * Returns one Mono per order, in the same order as the input.
+     */
+    public List<Mono<SendResult<String, String>>> publishOrderCreatedBatch(Map<String, OrderRequest> ordersByCorrelationId) {
+        if (!tryAcquire(ordersByCorrelationId.size())) {
+            Mono<SendResult<String, String>> rejected = Mono.error(new IllegalStateException("Too many order events in flight"));
+            return Collections.nCopies(ordersByCorrelationId.size(), rejected);
+        }
+
+        CompletableFuture<List<CompletableFuture<SendResult<String, String>>>> sent = Mono.fromCallable(() -> {
+                List<CompletableFuture<SendResult<String, String>>> futures = new ArrayList<>(ordersByCorrelationId.size());
+                ordersByCorrelationId.forEach((correlationId, request) -> {
+                    try {
+                        ProducerRecord<String, String> record;
+                        try {
+                            record = buildOrderCreatedRecord(request, correlationId, null);
+                        } catch (JsonProcessingException | IllegalStateException e) {
+                            inFlight.decrementAndGet();
+                            throw e;
+                        }
+                        futures.add(send(batchKafkaTemplate, record));
+                    } catch (Exception e) {
+                        logger.error("Error publishing batched order event, correlationId: {}", correlationId, e);
+                        futures.add(CompletableFuture.failedFuture(e));
+                    }
+                });
+                logger.info("Published batch of {} OrderCreated events", ordersByCorrelationId.size());
+                return futures;
+            })
+            .subscribeOn(Schedulers.boundedElastic())
+            .toFuture();
+
+        List<Mono<SendResult<String, String>>> results = new ArrayList<>(ordersByCorrelationId.size());
+        for (int i = 0; i < ordersByCorrelationId.size(); i++) {
+            int index = i;
+            results.add(Mono.fromFuture(sent, true).flatMap(futures -> Mono.fromFuture(futures.get(index), true)));
+        }
+        return results;
+    }
+
+    @PreDestroy
+    public void closeBatchProducer() {
+        batchProducerFactory.destroy();
+    }
+
+    // Sends a record holding an in-flight permit, which is released once the send completes or fails.
+    private CompletableFuture<SendResult<String, String>> send(KafkaTemplate<String, String> template,
+                                                                ProducerRecord<String, String> record) {
+        CompletableFuture<SendResult<String, String>> future;
         try {
-            String sagaId = UUID.randomUUID().toString();
-            String idempotencyKey = UUID.randomUUID().toString();
-            Map<String, Object> event = new HashMap<>();
-            event.put("eventType", "OrderCreated");
-            event.put("sagaId", sagaId);
-            event.put("customerId", request.getCustomerId());
-            event.put("productId", request.getProductId());
-            event.put("quantity", request.getQuantity());
-            event.put("amount", request.getAmount());
-            event.put("correlationId", correlationId);
-            event.put("idempotencyKey", idempotencyKey);
-            event.put("timestamp", Instant.now().toString());
-
-            String eventJson = objectMapper.writeValueAsString(event);
-            kafkaTemplate.send(ORDER_EVENTS_TOPIC, request.getCustomerId(), eventJson).get();
-            logger.info("Published OrderCreated event with sagaId: {}, correlationId: {}, idempotencyKey: {}", sagaId, correlationId, idempotencyKey);
-            
-            Thread.sleep(500);
-            return null;
-        } catch (Exception e) {
-            logger.error("Error publishing order event", e);
-            return null;
+            future = template.send(record);
+        } catch (RuntimeException e) {
+            inFlight.decrementAndGet();
+            throw e;
+        }
+        future.whenComplete((result, e) -> inFlight.decrementAndGet());
+        return future;
+    }
+
+    private ProducerRecord<String, String> buildOrderCreatedRecord(OrderRequest request, String correlationId,
+                                                                   String clientIdempotencyKey) throws JsonProcessingException {
+        // Without an owned order-response partition the reply would go to another instance and be lost.
+        int replyPartition = replyPartitionTracker.replyPartition()
+            .orElseThrow(() -> new IllegalStateException("No order-response partition assigned to this instance"));
+        String sagaId = idGenerator.nextId();
+        String idempotencyKey = clientIdempotencyKey != null
+            ? UUID.nameUUIDFromBytes(clientIdempotencyKey.getBytes(StandardCharsets.UTF_8)).toString()
+            : idGenerator.nextId();
+        Map<String, Object> event = new HashMap<>();
+        event.put("eventType", "OrderCreated");
+        event.put("sagaId", sagaId);
+        event.put("customerId", request.getCustomerId());
+        event.put("productId", request.getProductId());
+        event.put("quantity", request.getQuantity());
+        event.put("amount", request.getAmount());
+        event.put("correlationId", correlationId);
+        event.put("idempotencyKey", idempotencyKey);
+        event.put("timestamp", Instant.now().toString());
+
+        String eventJson = objectMapper.writeValueAsString(event);
+        ProducerRecord<String, String> record = new ProducerRecord<>(ORDER_EVENTS_TOPIC, request.getCustomerId(), eventJson);
+        record.headers().add(KafkaHeaders.REPLY_TOPIC, ReplyPartitionTracker.REPLY_TOPIC.getBytes(StandardCharsets.UTF_8));
+        record.headers().add(KafkaHeaders.REPLY_PARTITION, ByteBuffer.allocate(Integer.BYTES).putInt(replyPartition).array());
+        logger.debug("Built OrderCreated event with sagaId: {}, correlationId: {}, idempotencyKey: {}", sagaId, correlationId, idempotencyKey);
+        return record;
+    }
+
+    private boolean tryAcquire(int permits) {
+        while (true) {
+            int current = inFlight.get();
+            if (current + permits > maxInFlight) {
+                rejectedCounter.increment();
+                logger.warn("Rejecting {} OrderCreated event(s), {} sends already in flight", permits, current);
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + permits)) {
+                return true;
+            }
         }
     }
 }
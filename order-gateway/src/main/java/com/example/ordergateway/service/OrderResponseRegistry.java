@@ -0,0 +1,126 @@
+package com.example.ordergateway.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Correlates order-response replies with the requests waiting for them.
+ * Each correlationId is registered before the OrderCreated event is published and
+ * completed from the Kafka listener, so no request thread ever polls or sleeps. Entries
+ * expire at their deadline whether or not anyone subscribed to them.
+ */
+@Service
+public class OrderResponseRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(OrderResponseRegistry.class);
+
+    private final Map<String, PendingReply> pendingReplies = new ConcurrentHashMap<>();
+
+    private final Duration timeout;
+    private final int maxPending;
+
+    private final Counter completedCounter;
+    private final Counter timeoutCounter;
+    private final Counter orphanedCounter;
+    private final Counter rejectedCounter;
+    private final Counter evictedCounter;
+
+    public OrderResponseRegistry(MeterRegistry meterRegistry,
+                                 @Value("${order.response.timeout:2s}") Duration timeout,
+                                 @Value("${order.response.max-pending:10000}") int maxPending) {
+        this.timeout = timeout;
+        this.maxPending = maxPending;
+        meterRegistry.gaugeMapSize("order_correlation_inflight", Tags.empty(), pendingReplies);
+        this.completedCounter = meterRegistry.counter("order_correlation_completed");
+        this.timeoutCounter = meterRegistry.counter("order_correlation_timeouts");
+        this.orphanedCounter = meterRegistry.counter("order_correlation_orphaned");
+        this.rejectedCounter = meterRegistry.counter("order_correlation_rejected");
+        this.evictedCounter = meterRegistry.counter("order_correlation_evicted");
+    }
+
+    /**
+     * Registers a correlationId and returns a Mono that emits the orderId once the reply
+     * arrives, or completes empty when the timeout elapses or the registry is full.
+     * Must be called before the event is published so a fast reply cannot be missed.
+     */
+    public Mono<Long> register(String correlationId) {
+        return register(correlationId, timeout);
+    }
+
+    public Mono<Long> register(String correlationId, Duration timeout) {
+        if (pendingReplies.size() >= maxPending) {
+            evictExpired();
+            if (pendingReplies.size() >= maxPending) {
+                rejectedCounter.increment();
+                logger.warn("Correlation registry full ({} pending), not waiting for correlationId: {}", maxPending, correlationId);
+                return Mono.empty();
+            }
+        }
+
+        // The deadline starts now, not when the Mono is subscribed, and the sweep removes the entry
+        // at the deadline even if the Mono is never subscribed (publish failed, request cancelled).
+        PendingReply pending = new PendingReply(Sinks.one(), System.nanoTime() + timeout.toNanos());
+        pendingReplies.put(correlationId, pending);
+
+        return Mono.defer(() -> pending.sink().asMono()
+                .timeout(Duration.ofNanos(Math.max(0, pending.deadlineNanos() - System.nanoTime()))))
+            .onErrorResume(TimeoutException.class, e -> {
+                timeoutCounter.increment();
+                logger.warn("Timed out waiting for order response, correlationId: {}", correlationId);
+                return Mono.empty();
+            })
+            .doFinally(signal -> pendingReplies.remove(correlationId, pending));
+    }
+
+    /**
+     * Completes the waiter for a correlationId. Replies nobody is waiting for
+     * (timed out, or addressed to another request) are counted and dropped.
+     */
+    public void complete(String correlationId, Long orderId) {
+        PendingReply pending = pendingReplies.remove(correlationId);
+        if (pending == null) {
+            orphanedCounter.increment();
+            logger.debug("No pending request for correlationId: {}, dropping reply", correlationId);
+            return;
+        }
+        pending.sink().tryEmitValue(orderId);
+        completedCounter.increment();
+    }
+
+    /**
+     * Releases a registration whose Mono will never be subscribed, e.g. when publishing failed.
+     */
+    public void cancel(String correlationId) {
+        PendingReply pending = pendingReplies.remove(correlationId);
+        if (pending != null) {
+            pending.sink().tryEmitEmpty();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${order.response.sweep-interval:1000}")
+    public void evictExpired() {
+        long now = System.nanoTime();
+        pendingReplies.forEach((correlationId, pending) -> {
+            if (now - pending.deadlineNanos() > 0 && pendingReplies.remove(correlationId, pending)) {
+                pending.sink().tryEmitEmpty();
+                evictedCounter.increment();
+            }
+        });
+    }
+
+    private record PendingReply(Sinks.One<Long> sink, long deadlineNanos) {
+    }
+}
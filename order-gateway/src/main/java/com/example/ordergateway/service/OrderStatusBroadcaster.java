@@ -0,0 +1,127 @@
+package com.example.ordergateway.service;
+
+import com.example.ordergateway.dto.OrderStatusEvent;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.annotation.TopicPartition;
+import org.springframework.kafka.listener.ConsumerSeekAware;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fans order-status-events out to the clients streaming GET /api/orders/{id}/events on this
+ * instance. A client may be connected to any replica, so every instance reads every partition of
+ * the topic: the partitions are assigned directly, without a consumer group that replicas could
+ * end up sharing, and reading starts at the end. Events for orders nobody is watching are dropped.
+ */
+@Service
+public class OrderStatusBroadcaster implements ConsumerSeekAware {
+
+    private static final Logger logger = LoggerFactory.getLogger(OrderStatusBroadcaster.class);
+    public static final String ORDER_STATUS_TOPIC = "order-status-events";
+
+    private final ObjectMapper objectMapper;
+    private final int maxSubscribers;
+
+    private final Map<Long, Channel> channels = new ConcurrentHashMap<>();
+    private final AtomicInteger subscribers = new AtomicInteger(0);
+    private final Counter receivedCounter;
+    private final Counter deliveredCounter;
+    private final Counter rejectedCounter;
+
+    public OrderStatusBroadcaster(ObjectMapper objectMapper,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${order.events.max-subscribers:10000}") int maxSubscribers) {
+        this.objectMapper = objectMapper;
+        this.maxSubscribers = maxSubscribers;
+        meterRegistry.gauge("order_status_subscribers", subscribers);
+        meterRegistry.gaugeMapSize("order_status_watched_orders", Tags.empty(), channels);
+        this.receivedCounter = meterRegistry.counter("order_status_events_received");
+        this.deliveredCounter = meterRegistry.counter("order_status_events_delivered");
+        this.rejectedCounter = meterRegistry.counter("order_status_subscribers_rejected");
+    }
+
+    public boolean hasCapacity() {
+        return subscribers.get() < maxSubscribers;
+    }
+
+    /**
+     * Returns a hot stream of status changes for one order. The order is watched from the
+     * moment the stream is subscribed; the stream errors if this instance already has
+     * {@code order.events.max-subscribers} open streams.
+     */
+    public Flux<OrderStatusEvent> updates(Long orderId) {
+        return Flux.defer(() -> {
+            if (subscribers.incrementAndGet() > maxSubscribers) {
+                subscribers.decrementAndGet();
+                rejectedCounter.increment();
+                logger.warn("Rejecting status stream for order: {}, {} streams already open", orderId, maxSubscribers);
+                return Flux.error(new IllegalStateException("Too many order status streams"));
+            }
+            Channel channel = channels.compute(orderId, (id, existing) -> {
+                Channel current = existing != null ? existing : new Channel(Sinks.many().multicast().directBestEffort());
+                current.subscribers++;
+                return current;
+            });
+            return channel.sink().asFlux()
+                .doFinally(signal -> {
+                    subscribers.decrementAndGet();
+                    channels.computeIfPresent(orderId, (id, current) -> --current.subscribers == 0 ? null : current);
+                });
+        });
+    }
+
+    // No group id: offsets are never committed, and a restarted instance starts from the end again.
+    @KafkaListener(topicPartitions = @TopicPartition(topic = ORDER_STATUS_TOPIC,
+        partitions = "#{'0-' + (${order.events.partitions:3} - 1)}"))
+    public void handleOrderStatus(String message) {
+        receivedCounter.increment();
+        try {
+            JsonNode event = objectMapper.readTree(message);
+            long orderId = event.get("orderId").asLong();
+            Channel channel = channels.get(orderId);
+            if (channel == null) {
+                return;
+            }
+            OrderStatusEvent statusEvent = new OrderStatusEvent(orderId, event.get("status").asText(),
+                event.has("timestamp") ? event.get("timestamp").asText() : null);
+            if (channel.sink().tryEmitNext(statusEvent).isSuccess()) {
+                deliveredCounter.increment(channel.sink().currentSubscriberCount());
+            }
+            logger.debug("Broadcast status {} for order: {}", statusEvent.getStatus(), orderId);
+        } catch (Exception e) {
+            logger.error("Error processing order status event", e);
+        }
+    }
+
+    @Override
+    public void onPartitionsAssigned(Map<org.apache.kafka.common.TopicPartition, Long> assignments, ConsumerSeekCallback callback) {
+        callback.seekToEnd(assignments.keySet());
+    }
+
+    private static final class Channel {
+        private final Sinks.Many<OrderStatusEvent> sink;
+        // Only read and written inside channels.compute, which serializes access per order.
+        private int subscribers;
+
+        Channel(Sinks.Many<OrderStatusEvent> sink) {
+            this.sink = sink;
+        }
+
+        Sinks.Many<OrderStatusEvent> sink() {
+            return sink;
+        }
+    }
+}
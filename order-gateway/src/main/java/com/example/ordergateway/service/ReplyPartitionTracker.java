@@ -0,0 +1,65 @@
+package com.example.ordergateway.service;
+
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.common.TopicPartition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.kafka.listener.ConsumerAwareRebalanceListener;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.OptionalInt;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Tracks which order-response partitions this gateway instance currently owns in
+ * gateway-group, so published orders can ask order-service to reply on one of them. An
+ * instance that owns none (more replicas than order.response.partitions, or a rebalance in
+ * progress) would never see its replies, so it reports DOWN and refuses new orders until it
+ * is assigned a partition.
+ */
+@Component
+public class ReplyPartitionTracker implements ConsumerAwareRebalanceListener, HealthIndicator {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReplyPartitionTracker.class);
+    public static final String REPLY_TOPIC = "order-response";
+
+    private final ConcurrentSkipListSet<Integer> ownedPartitions = new ConcurrentSkipListSet<>();
+
+    @Override
+    public void onPartitionsAssigned(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+        partitions.stream()
+            .filter(tp -> REPLY_TOPIC.equals(tp.topic()))
+            .forEach(tp -> ownedPartitions.add(tp.partition()));
+        logger.info("Reply partitions owned by this instance: {}", ownedPartitions);
+    }
+
+    @Override
+    public void onPartitionsRevokedBeforeCommit(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+        release(partitions);
+    }
+
+    @Override
+    public void onPartitionsLost(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+        release(partitions);
+    }
+
+    public OptionalInt replyPartition() {
+        return ownedPartitions.stream().mapToInt(Integer::intValue).findFirst();
+    }
+
+    @Override
+    public Health health() {
+        return ownedPartitions.isEmpty()
+            ? Health.down().withDetail("reason", "No " + REPLY_TOPIC + " partition assigned to this instance").build()
+            : Health.up().withDetail("partitions", ownedPartitions).build();
+    }
+
+    private void release(Collection<TopicPartition> partitions) {
+        partitions.stream()
+            .filter(tp -> REPLY_TOPIC.equals(tp.topic()))
+            .forEach(tp -> ownedPartitions.remove(tp.partition()));
+    }
+}
@@ -1,28 +1,109 @@
 package com.example.ordergateway.service;
 
+import com.example.ordergateway.security.JwtUtil;
+import io.jsonwebtoken.Claims;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Range;
 import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
 
 import java.time.Duration;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Keeps a local per-user "not before" cutoff so token validation never touches Redis.
+ * Cutoffs are epoch milliseconds compared against the token's millisecond issue time, written
+ * to the jwt:not-before-cutoffs sorted set (scored by cutoff) and broadcast on the
+ * jwt-revocations-ms channel; every gateway instance applies them as they arrive and
+ * periodically resyncs the live cutoffs in case a message was missed.
+ */
 @Service
 public class TokenService {
+    private static final Logger logger = LoggerFactory.getLogger(TokenService.class);
+
+    public static final String NOT_BEFORE_KEY = "jwt:not-before-cutoffs";
+    public static final String REVOCATION_CHANNEL = "jwt-revocations-ms";
 
     @Autowired
     private ReactiveStringRedisTemplate redisTemplate;
 
-    public Mono<Void> storeToken(String username, String token) {
-        return redisTemplate.opsForValue()
-            .set("jwt:" + username, token, Duration.ofHours(24))
+    @Value("${jwt.expiration:86400000}")
+    private Long expiration;
+
+    private final Map<String, Long> notBefore = new ConcurrentHashMap<>();
+
+    /**
+     * Records a login: every token issued to the user before this one stops being accepted.
+     */
+    public Mono<Void> registerLogin(String username, Date issuedAt) {
+        return revokeTokensIssuedBefore(username, issuedAt.getTime());
+    }
+
+    public Mono<Void> revokeTokensIssuedBefore(String username, long epochMilli) {
+        notBefore.merge(username, epochMilli, Math::max);
+        return redisTemplate.opsForZSet().add(NOT_BEFORE_KEY, username, epochMilli)
+            .then(redisTemplate.convertAndSend(REVOCATION_CHANNEL, username + ":" + epochMilli))
             .then();
     }
 
-    public Mono<Boolean> isTokenValid(String username, String token) {
-        return redisTemplate.opsForValue()
-            .get("jwt:" + username)
-            .map(storedToken -> storedToken.equals(token))
-            .defaultIfEmpty(false);
+    public boolean isTokenValid(Claims claims) {
+        Long cutoff = notBefore.get(claims.getSubject());
+        if (cutoff == null) {
+            return true;
+        }
+        Long issuedAt = JwtUtil.issuedAtMillis(claims);
+        return issuedAt != null && issuedAt >= cutoff;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void subscribeToRevocations() {
+        redisTemplate.listenToChannel(REVOCATION_CHANNEL)
+            .doOnSubscribe(subscription -> resyncRevocations())
+            .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(1)).maxBackoff(Duration.ofSeconds(30))
+                .doBeforeRetry(signal -> logger.warn("Revocation channel subscription lost, retrying: {}", signal.failure().getMessage())))
+            .subscribe(message -> applyRevocation(message.getMessage()));
+    }
+
+    @Scheduled(fixedDelayString = "${jwt.revocation.resync-interval:30000}")
+    public void resyncRevocations() {
+        // A cutoff older than the token lifetime can no longer reject anything, so it is dropped
+        // from Redis too and a resync only reads the cutoffs of live tokens.
+        double oldestLiveIssuedAt = System.currentTimeMillis() - expiration;
+        redisTemplate.opsForZSet().removeRangeByScore(NOT_BEFORE_KEY,
+                Range.leftUnbounded(Range.Bound.exclusive(oldestLiveIssuedAt)))
+            .thenMany(redisTemplate.opsForZSet().rangeByScoreWithScores(NOT_BEFORE_KEY,
+                Range.rightUnbounded(Range.Bound.inclusive(oldestLiveIssuedAt))))
+            .subscribe(
+                cutoff -> notBefore.merge(cutoff.getValue(), cutoff.getScore().longValue(), Math::max),
+                e -> logger.warn("Could not resync token revocations from Redis: {}", e.getMessage()),
+                () -> notBefore.values().removeIf(cutoff -> cutoff < oldestLiveIssuedAt));
+    }
+
+    private void applyRevocation(String message) {
+        int separator = message.lastIndexOf(':');
+        if (separator <= 0) {
+            logger.warn("Ignoring malformed revocation message: {}", message);
+            return;
+        }
+        String username = message.substring(0, separator);
+        long epochMilli;
+        try {
+            epochMilli = Long.parseLong(message.substring(separator + 1));
+        } catch (NumberFormatException e) {
+            logger.warn("Ignoring malformed revocation message: {}", message);
+            return;
+        }
+        notBefore.merge(username, epochMilli, Math::max);
+        logger.debug("Applied token revocation for user: {} issued before {}", username, epochMilli);
     }
 }
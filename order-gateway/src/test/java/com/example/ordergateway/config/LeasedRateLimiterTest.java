@@ -0,0 +1,131 @@
+package com.example.ordergateway.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.springframework.cloud.gateway.filter.ratelimit.RateLimiter;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class LeasedRateLimiterTest {
+
+    private static final String ROUTE = "orders";
+
+    private final ReactiveStringRedisTemplate redisTemplate = mock(ReactiveStringRedisTemplate.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final Deque<Object> leases = new ArrayDeque<>();
+
+    @Test
+    void servesLeasedTokensLocallyAndRenewsAtHalfTheLease() {
+        LeasedRateLimiter limiter = limiter(Duration.ofSeconds(10));
+        grant(10, 10);
+
+        // The first request leases 10 tokens; the one leaving 5 of them renews the lease
+        for (int i = 0; i < 5; i++) {
+            assertThat(isAllowed(limiter, "alice")).isTrue();
+        }
+
+        verifyLeases(2);
+        assertThat(counter("rate_limiter_leased_tokens")).isEqualTo(20);
+        assertThat(counter("rate_limiter_lease_refills")).isEqualTo(2);
+    }
+
+    @Test
+    void rejectsLocallyOnceTheLeaseIsSpentAndRedisIsEmpty() {
+        LeasedRateLimiter limiter = limiter(Duration.ofSeconds(10));
+        grant(10, 0);
+
+        for (int i = 0; i < 10; i++) {
+            assertThat(isAllowed(limiter, "alice")).isTrue();
+        }
+        // Redis granted nothing, so the next lease waits until it has refilled a token
+        assertThat(isAllowed(limiter, "alice")).isFalse();
+
+        verifyLeases(2);
+        assertThat(counter("rate_limiter_leased_tokens")).isEqualTo(10);
+        assertThat(counter("rate_limiter_local_rejects")).isEqualTo(1);
+    }
+
+    @Test
+    void eachClientLeasesItsOwnTokens() {
+        LeasedRateLimiter limiter = limiter(Duration.ofSeconds(10));
+        grant(10, 10);
+
+        assertThat(isAllowed(limiter, "alice")).isTrue();
+        assertThat(isAllowed(limiter, "bob")).isTrue();
+
+        verifyLeases(2);
+        assertThat(counter("rate_limiter_leased_tokens")).isEqualTo(20);
+    }
+
+    @Test
+    void dropsLeasedTokensLeftUnusedPastTheLeaseTtl() throws InterruptedException {
+        LeasedRateLimiter limiter = limiter(Duration.ofMillis(1));
+        grant(10, 10);
+
+        assertThat(isAllowed(limiter, "alice")).isTrue();
+        Thread.sleep(20);
+        assertThat(isAllowed(limiter, "alice")).isTrue();
+
+        verifyLeases(2);
+    }
+
+    @Test
+    void fallsBackToALocalBucketWhenRedisFails() {
+        LeasedRateLimiter limiter = limiter(Duration.ofSeconds(10));
+        leases.add(new IllegalStateException("Redis is down"));
+
+        // The local bucket starts full (burst 50) and hands out one lease of 10
+        assertThat(isAllowed(limiter, "alice")).isTrue();
+
+        assertThat(counter("rate_limiter_redis_fallbacks")).isEqualTo(1);
+        assertThat(counter("rate_limiter_leased_tokens")).isEqualTo(10);
+    }
+
+    private LeasedRateLimiter limiter(Duration leaseTtl) {
+        when(redisTemplate.execute(ArgumentMatchers.<RedisScript<Long>>any(), anyList(), anyList()))
+            .thenAnswer(invocation -> {
+                Object lease = leases.poll();
+                return lease instanceof Throwable error ? Flux.error(error) : Flux.just((Long) lease);
+            });
+        LeasedRateLimiter limiter = new LeasedRateLimiter(redisTemplate, meterRegistry, null,
+            leaseTtl, Duration.ofMillis(250), Duration.ofMinutes(5));
+        LeasedRateLimiter.Config config = new LeasedRateLimiter.Config();
+        config.setReplenishRate(1);
+        config.setBurstCapacity(50);
+        config.setLeaseSize(10);
+        limiter.getConfig().put(ROUTE, config);
+        return limiter;
+    }
+
+    private void grant(long... tokens) {
+        for (long granted : tokens) {
+            leases.add(granted);
+        }
+    }
+
+    private boolean isAllowed(LeasedRateLimiter limiter, String id) {
+        RateLimiter.Response response = limiter.isAllowed(ROUTE, id).block();
+        return response != null && response.isAllowed();
+    }
+
+    private void verifyLeases(int count) {
+        verify(redisTemplate, times(count)).execute(ArgumentMatchers.<RedisScript<Long>>any(), anyList(), anyList());
+    }
+
+    private double counter(String name) {
+        return meterRegistry.counter(name, "route", ROUTE).count();
+    }
+}
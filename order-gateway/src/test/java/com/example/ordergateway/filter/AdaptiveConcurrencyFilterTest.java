@@ -0,0 +1,116 @@
+package com.example.ordergateway.filter;
+
+import com.example.ordergateway.filter.AdaptiveConcurrencyFilter.GradientLimiter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AdaptiveConcurrencyFilterTest {
+
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void shedsRequestsOverTheLimit() {
+        AdaptiveConcurrencyFilter.Config config = new AdaptiveConcurrencyFilter.Config();
+        config.setInitialLimit(2);
+        GradientLimiter limiter = new GradientLimiter("test", config, meterRegistry);
+
+        assertThat(limiter.tryAcquire()).isTrue();
+        assertThat(limiter.tryAcquire()).isTrue();
+        assertThat(limiter.tryAcquire()).isFalse();
+        limiter.release();
+        assertThat(limiter.tryAcquire()).isTrue();
+
+        assertThat(meterRegistry.counter("gateway_concurrency_shed", "name", "test").count()).isEqualTo(1);
+    }
+
+    @Test
+    void steadyLatencyUnderLoadGrowsTheLimit() {
+        GradientLimiter limiter = new GradientLimiter("test", new AdaptiveConcurrencyFilter.Config(), meterRegistry);
+
+        // gradient 1: 20 * 0.8 + (20 + sqrt(20)) * 0.2 = 20.89
+        sampleAtLimit(limiter, FAST, false);
+        assertThat(limiter.getLimit()).isEqualTo(20);
+
+        int previous = limiter.getLimit();
+        for (int i = 0; i < 20; i++) {
+            sampleAtLimit(limiter, FAST, false);
+            assertThat(limiter.getLimit()).isGreaterThanOrEqualTo(previous);
+            previous = limiter.getLimit();
+        }
+        assertThat(limiter.getLimit()).isGreaterThan(30);
+    }
+
+    @Test
+    void risingLatencyShrinksTheLimit() {
+        GradientLimiter limiter = new GradientLimiter("test", new AdaptiveConcurrencyFilter.Config(), meterRegistry);
+        for (int i = 0; i < 20; i++) {
+            sampleAtLimit(limiter, FAST, false);
+        }
+        int learned = limiter.getLimit();
+
+        for (int i = 0; i < 20; i++) {
+            sampleAtLimit(limiter, SLOW, false);
+        }
+
+        assertThat(limiter.getLimit()).isLessThan(learned);
+    }
+
+    @Test
+    void droppedRequestsBackOffDownToTheMinimum() {
+        GradientLimiter limiter = new GradientLimiter("test", new AdaptiveConcurrencyFilter.Config(), meterRegistry);
+
+        sample(limiter, FAST, true);
+        assertThat(limiter.getLimit()).isEqualTo(18);
+        sample(limiter, FAST, true);
+        assertThat(limiter.getLimit()).isEqualTo(16);
+
+        for (int i = 0; i < 50; i++) {
+            sample(limiter, FAST, true);
+        }
+        assertThat(limiter.getLimit()).isEqualTo(4);
+    }
+
+    @Test
+    void lightLoadLeavesTheLimitAlone() {
+        GradientLimiter limiter = new GradientLimiter("test", new AdaptiveConcurrencyFilter.Config(), meterRegistry);
+
+        // Fewer than half the limit in flight says nothing about capacity, however slow
+        for (int i = 0; i < 20; i++) {
+            sample(limiter, SLOW * (i + 1), false);
+        }
+
+        assertThat(limiter.getLimit()).isEqualTo(20);
+    }
+
+    @Test
+    void limitStaysWithinTheConfiguredMaximum() {
+        AdaptiveConcurrencyFilter.Config config = new AdaptiveConcurrencyFilter.Config();
+        config.setMaxLimit(25);
+        GradientLimiter limiter = new GradientLimiter("test", config, meterRegistry);
+
+        for (int i = 0; i < 100; i++) {
+            sampleAtLimit(limiter, FAST, false);
+        }
+
+        assertThat(limiter.getLimit()).isEqualTo(25);
+    }
+
+    // Completes one request while the limiter is full
+    private void sampleAtLimit(GradientLimiter limiter, long rttNanos, boolean dropped) {
+        while (limiter.tryAcquire()) {
+        }
+        limiter.onSample(rttNanos, dropped);
+    }
+
+    private void sample(GradientLimiter limiter, long rttNanos, boolean dropped) {
+        assertThat(limiter.tryAcquire()).isTrue();
+        limiter.onSample(rttNanos, dropped);
+    }
+}
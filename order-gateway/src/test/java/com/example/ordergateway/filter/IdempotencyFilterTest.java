@@ -0,0 +1,96 @@
+package com.example.ordergateway.filter;
+
+import com.example.ordergateway.service.IdempotencyStore;
+import com.example.ordergateway.service.IdempotencyStore.IdempotencyRecord;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class IdempotencyFilterTest {
+
+    private static final String KEY = "anonymous:key-1";
+
+    private final IdempotencyStore idempotencyStore = mock(IdempotencyStore.class);
+    private final IdempotencyFilter idempotencyFilter = new IdempotencyFilter();
+    private final ResponseCaptureFilter responseCaptureFilter = new ResponseCaptureFilter();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(idempotencyFilter, "idempotencyStore", idempotencyStore);
+        ReflectionTestUtils.setField(idempotencyFilter, "objectMapper", new ObjectMapper());
+        ReflectionTestUtils.setField(idempotencyFilter, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(idempotencyFilter, "maxKeyLength", 255);
+        ReflectionTestUtils.setField(idempotencyFilter, "maxBodySize", DataSize.ofKilobytes(16));
+        when(idempotencyStore.claim(anyString(), anyString())).thenReturn(Mono.just(Optional.empty()));
+        when(idempotencyStore.complete(anyString(), any())).thenReturn(Mono.empty());
+        when(idempotencyStore.completeProvisional(anyString(), any())).thenReturn(Mono.empty());
+        when(idempotencyStore.release(anyString())).thenReturn(Mono.empty());
+    }
+
+    @Test
+    void storesTheResponseForTheFullTtl() {
+        post(HttpStatus.OK, "{\"orderId\":1,\"status\":\"PENDING\"}", false);
+
+        verify(idempotencyStore).complete(eq(KEY), any(IdempotencyRecord.class));
+        verify(idempotencyStore, never()).completeProvisional(anyString(), any());
+    }
+
+    @Test
+    void storesAProvisionalResponseOnlyBriefly() {
+        post(HttpStatus.OK, "{\"status\":\"PENDING\",\"message\":\"Order is being processed\"}", true);
+
+        verify(idempotencyStore).completeProvisional(eq(KEY), any(IdempotencyRecord.class));
+        verify(idempotencyStore, never()).complete(anyString(), any());
+    }
+
+    @Test
+    void releasesTheKeyAfterAServerError() {
+        post(HttpStatus.SERVICE_UNAVAILABLE, "{\"error\":\"unavailable\"}", false);
+
+        verify(idempotencyStore).release(KEY);
+        verify(idempotencyStore, never()).complete(anyString(), any());
+        verify(idempotencyStore, never()).completeProvisional(anyString(), any());
+    }
+
+    private void post(HttpStatus status, String responseBody, boolean provisional) {
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.post("/api/orders")
+            .header(RetryBudgetFilter.IDEMPOTENCY_KEY_HEADER, "key-1")
+            .contentType(MediaType.APPLICATION_JSON)
+            .body("{\"customerId\":\"c1\"}"));
+        GatewayFilter filter = idempotencyFilter.apply(new IdempotencyFilter.Config());
+
+        responseCaptureFilter.filter(exchange, captured -> filter.filter(captured, routed -> {
+            if (provisional) {
+                routed.getAttributes().put(IdempotencyFilter.PROVISIONAL_RESPONSE_ATTR, true);
+            }
+            ServerHttpResponse response = routed.getResponse();
+            response.setStatusCode(status);
+            response.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+            return response.writeWith(Mono.just(response.bufferFactory().wrap(responseBody.getBytes(StandardCharsets.UTF_8))));
+        })).block();
+
+        assertThat(exchange.getResponse().getBodyAsString().block()).isEqualTo(responseBody);
+    }
+}
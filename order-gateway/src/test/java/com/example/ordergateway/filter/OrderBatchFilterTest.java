@@ -0,0 +1,88 @@
+package com.example.ordergateway.filter;
+
+import com.example.ordergateway.dto.OrderRequest;
+import com.example.ordergateway.service.IdGenerator;
+import com.example.ordergateway.service.OrderEventService;
+import com.example.ordergateway.service.OrderResponseRegistry;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.Validation;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class OrderBatchFilterTest {
+
+    private static final String ORDER = "{\"customerId\":\"c1\",\"productId\":\"p1\",\"quantity\":1,\"amount\":25.00}";
+
+    private final OrderEventService orderEventService = mock(OrderEventService.class);
+    private final OrderResponseRegistry orderResponseRegistry = mock(OrderResponseRegistry.class);
+    private final OrderBatchFilter orderBatchFilter = new OrderBatchFilter();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(orderBatchFilter, "validator", Validation.buildDefaultValidatorFactory().getValidator());
+        ReflectionTestUtils.setField(orderBatchFilter, "objectMapper", new ObjectMapper());
+        ReflectionTestUtils.setField(orderBatchFilter, "orderEventService", orderEventService);
+        ReflectionTestUtils.setField(orderBatchFilter, "orderResponseRegistry", orderResponseRegistry);
+        ReflectionTestUtils.setField(orderBatchFilter, "idGenerator", new IdGenerator());
+        ReflectionTestUtils.setField(orderBatchFilter, "maxBodySize", DataSize.ofMegabytes(4));
+        ReflectionTestUtils.setField(orderBatchFilter, "maxItems", 1000);
+        ReflectionTestUtils.setField(orderBatchFilter, "responseTimeout", Duration.ofSeconds(1));
+        when(orderResponseRegistry.register(anyString(), any())).thenReturn(Mono.just(42L));
+        when(orderEventService.publishOrderCreatedBatch(anyMap())).thenAnswer(invocation -> {
+            Map<String, OrderRequest> orders = invocation.getArgument(0);
+            return Collections.<Mono<SendResult<String, String>>>nCopies(orders.size(), Mono.empty());
+        });
+    }
+
+    @Test
+    void rejectsANullArrayElementAsAnItemError() {
+        MockServerWebExchange exchange = post(MediaType.APPLICATION_JSON, "[" + ORDER + ", null]");
+
+        assertThat(exchange.getResponse().getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(lines(exchange)).containsExactlyInAnyOrder(
+            "{\"index\":1,\"error\":\"Order must not be null\"}",
+            "{\"index\":0,\"orderId\":42,\"customerId\":\"c1\",\"productId\":\"p1\",\"quantity\":1,\"amount\":25.00,\"status\":\"PENDING\"}");
+    }
+
+    @Test
+    void rejectsANullNdjsonLineAsAnItemError() {
+        MockServerWebExchange exchange = post(MediaType.APPLICATION_NDJSON, "null\n" + ORDER + "\n");
+
+        assertThat(exchange.getResponse().getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(lines(exchange)).hasSize(2).contains("{\"index\":0,\"error\":\"Order must not be null\"}");
+    }
+
+    private MockServerWebExchange post(MediaType contentType, String body) {
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.post("/api/orders/batch")
+            .contentType(contentType)
+            .body(body));
+        orderBatchFilter.apply(new OrderBatchFilter.Config())
+            .filter(exchange, unused -> Mono.error(new AssertionError("batches must not be routed")))
+            .block();
+        return exchange;
+    }
+
+    private static List<String> lines(MockServerWebExchange exchange) {
+        return exchange.getResponse().getBodyAsString().block().lines().toList();
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.ordergateway.filter;
+
+import com.example.ordergateway.service.IdGenerator;
+import com.example.ordergateway.service.OrderEventService;
+import com.example.ordergateway.service.OrderResponseRegistry;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.Validator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+import reactor.core.publisher.Mono;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class OrderValidationFilterTest {
+
+    private final OrderEventService orderEventService = mock(OrderEventService.class);
+    private final OrderResponseRegistry orderResponseRegistry = mock(OrderResponseRegistry.class);
+    private final OrderValidationFilter orderValidationFilter = new OrderValidationFilter();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(orderValidationFilter, "validator", mock(Validator.class));
+        ReflectionTestUtils.setField(orderValidationFilter, "objectMapper", new ObjectMapper());
+        ReflectionTestUtils.setField(orderValidationFilter, "orderEventService", orderEventService);
+        ReflectionTestUtils.setField(orderValidationFilter, "orderResponseRegistry", orderResponseRegistry);
+        ReflectionTestUtils.setField(orderValidationFilter, "idGenerator", new IdGenerator());
+        ReflectionTestUtils.setField(orderValidationFilter, "maxBodySize", DataSize.ofKilobytes(16));
+        when(orderEventService.publishOrderCreated(any(), anyString(), any())).thenReturn(Mono.empty());
+    }
+
+    @Test
+    void answersWithTheOrderIdOnceTheOrderResponseArrives() {
+        when(orderResponseRegistry.register(anyString())).thenReturn(Mono.just(42L));
+
+        MockServerWebExchange exchange = createOrder();
+
+        assertThat(exchange.getResponse().getBodyAsString().block()).contains("\"orderId\":42");
+        assertThat(exchange.getAttributes()).doesNotContainKey(IdempotencyFilter.PROVISIONAL_RESPONSE_ATTR);
+    }
+
+    @Test
+    void marksThePendingFallbackWithoutAnOrderIdAsProvisional() {
+        // The registry completes empty when no order response arrives in time
+        when(orderResponseRegistry.register(anyString())).thenReturn(Mono.empty());
+
+        MockServerWebExchange exchange = createOrder();
+
+        assertThat(exchange.getResponse().getBodyAsString().block()).doesNotContain("orderId").contains("PENDING");
+        assertThat(exchange.<Boolean>getAttribute(IdempotencyFilter.PROVISIONAL_RESPONSE_ATTR)).isTrue();
+    }
+
+    private MockServerWebExchange createOrder() {
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.post("/api/orders")
+            .contentType(MediaType.APPLICATION_JSON)
+            .body("{\"customerId\":\"c1\",\"productId\":\"p1\",\"quantity\":1,\"amount\":25.00}"));
+        orderValidationFilter.apply(new OrderValidationFilter.Config())
+            .filter(exchange, unused -> Mono.error(new AssertionError("order creation must not be routed")))
+            .block();
+        return exchange;
+    }
+}
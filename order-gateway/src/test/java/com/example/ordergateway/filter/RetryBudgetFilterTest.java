@@ -0,0 +1,80 @@
+package com.example.ordergateway.filter;
+
+import com.example.ordergateway.filter.RetryBudgetFilter.RetryBudget;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RetryBudgetFilterTest {
+
+    private static final long START = 1_700_000_000_000L;
+
+    private final AtomicLong clock = new AtomicLong(START);
+
+    // Defaults: 10% of successes plus 1 retry per second, over a 10s window
+    private final RetryBudget budget = new RetryBudget(new RetryBudgetFilter.Config(), clock::get);
+
+    @Test
+    void allowsTheMinimumRetriesWithoutSuccesses() {
+        assertThat(withdrawAll()).isEqualTo(10);
+    }
+
+    @Test
+    void successesAddTheirRatioToTheBudget() {
+        recordSuccesses(100);
+
+        assertThat(withdrawAll()).isEqualTo(20);
+    }
+
+    @Test
+    void retriesOlderThanTheWindowNoLongerCount() {
+        assertThat(withdrawAll()).isEqualTo(10);
+
+        clock.set(START + 9_999);
+        assertThat(budget.tryWithdraw()).isFalse();
+
+        clock.set(START + 10_000);
+        assertThat(withdrawAll()).isEqualTo(10);
+    }
+
+    @Test
+    void retriesSpreadOverTheWindowAreAllCounted() {
+        for (int second = 0; second < 5; second++) {
+            clock.set(START + second * 1000L);
+            assertThat(budget.tryWithdraw()).isTrue();
+            assertThat(budget.tryWithdraw()).isTrue();
+        }
+
+        clock.set(START + 5_000);
+        assertThat(budget.tryWithdraw()).isFalse();
+
+        // The two retries of the first second leave the window
+        clock.set(START + 10_000);
+        assertThat(withdrawAll()).isEqualTo(2);
+    }
+
+    @Test
+    void successesOlderThanTheWindowNoLongerCount() {
+        recordSuccesses(100);
+
+        clock.set(START + 10_000);
+
+        assertThat(withdrawAll()).isEqualTo(10);
+    }
+
+    private void recordSuccesses(int count) {
+        for (int i = 0; i < count; i++) {
+            budget.recordSuccess();
+        }
+    }
+
+    private int withdrawAll() {
+        int withdrawn = 0;
+        while (budget.tryWithdraw()) {
+            withdrawn++;
+        }
+        return withdrawn;
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.ordergateway.service;
+
+import com.example.ordergateway.security.JwtUtil;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.ReactiveSubscription;
+import org.springframework.data.redis.core.DefaultTypedTuple;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.ReactiveZSetOperations;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Date;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class TokenServiceTest {
+
+    private static final long EXPIRATION = 86_400_000L;
+
+    private final ReactiveStringRedisTemplate redisTemplate = mock(ReactiveStringRedisTemplate.class);
+    @SuppressWarnings("unchecked")
+    private final ReactiveZSetOperations<String, String> zSetOperations = mock(ReactiveZSetOperations.class);
+    private final TokenService tokenService = new TokenService();
+
+    @Captor
+    private ArgumentCaptor<Range<Double>> removed;
+    @Captor
+    private ArgumentCaptor<Range<Double>> read;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        ReflectionTestUtils.setField(tokenService, "redisTemplate", redisTemplate);
+        ReflectionTestUtils.setField(tokenService, "expiration", EXPIRATION);
+        when(redisTemplate.opsForZSet()).thenReturn(zSetOperations);
+        when(zSetOperations.removeRangeByScore(eq(TokenService.NOT_BEFORE_KEY), any())).thenReturn(Mono.just(0L));
+        when(zSetOperations.rangeByScoreWithScores(eq(TokenService.NOT_BEFORE_KEY), any())).thenReturn(Flux.empty());
+    }
+
+    @Test
+    void keepsApplyingRevocationsAfterAMalformedMessage() {
+        long now = System.currentTimeMillis();
+        doReturn(Flux.just(message("alice:not-a-number"), message("bob:" + now)))
+            .when(redisTemplate).listenToChannel(TokenService.REVOCATION_CHANNEL);
+
+        tokenService.subscribeToRevocations();
+
+        assertThat(tokenService.isTokenValid(claims("alice", now - 1))).isTrue();
+        assertThat(tokenService.isTokenValid(claims("bob", now - 1))).isFalse();
+        assertThat(tokenService.isTokenValid(claims("bob", now))).isTrue();
+    }
+
+    @Test
+    void resyncDropsExpiredCutoffsFromRedisAndReadsOnlyLiveOnes() {
+        long now = System.currentTimeMillis();
+        when(zSetOperations.rangeByScoreWithScores(eq(TokenService.NOT_BEFORE_KEY), any()))
+            .thenReturn(Flux.just(new DefaultTypedTuple<>("alice", (double) now)));
+
+        tokenService.resyncRevocations();
+
+        verify(zSetOperations).removeRangeByScore(eq(TokenService.NOT_BEFORE_KEY), removed.capture());
+        verify(zSetOperations).rangeByScoreWithScores(eq(TokenService.NOT_BEFORE_KEY), read.capture());
+        double oldestLiveIssuedAt = removed.getValue().getUpperBound().getValue().orElseThrow();
+        assertThat(oldestLiveIssuedAt).isBetween(now - EXPIRATION - 1000.0, now - EXPIRATION + 1000.0);
+        assertThat(removed.getValue().getLowerBound().isBounded()).isFalse();
+        assertThat(removed.getValue().getUpperBound().isInclusive()).isFalse();
+        assertThat(read.getValue().getLowerBound().getValue()).contains(oldestLiveIssuedAt);
+        assertThat(read.getValue().getUpperBound().isBounded()).isFalse();
+        assertThat(tokenService.isTokenValid(claims("alice", now - 1))).isFalse();
+    }
+
+    private static ReactiveSubscription.Message<String, String> message(String body) {
+        return new ReactiveSubscription.ChannelMessage<>(TokenService.REVOCATION_CHANNEL, body);
+    }
+
+    private static Claims claims(String subject, long issuedAtMillis) {
+        Claims claims = Jwts.claims().setSubject(subject).setIssuedAt(new Date(issuedAtMillis));
+        claims.put(JwtUtil.ISSUED_AT_MILLIS_CLAIM, issuedAtMillis);
+        return claims;
+    }
+}
@@ -0,0 +1,157 @@
+package com.example.order.config;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.config.TopicBuilder;
+import org.springframework.kafka.core.KafkaAdmin;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.ContainerPartitionPausingBackOffManager;
+import org.springframework.kafka.listener.ContainerPausingBackOffHandler;
+import org.springframework.kafka.listener.DeadLetterPublishingRecoverer;
+import org.springframework.kafka.listener.DefaultErrorHandler;
+import org.springframework.kafka.listener.KafkaConsumerBackoffManager;
+import org.springframework.kafka.listener.ListenerContainerPauseService;
+import org.springframework.kafka.listener.SeekUtils;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.util.backoff.FixedBackOff;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Failed records are moved off their partition instead of being retried in place, so one bad
+ * event no longer holds up the records behind it. The container error handler hands a failed
+ * record straight to a DeadLetterPublishingRecoverer, which republishes it to the next retry tier
+ * ({@code <topic>-retry-0}, {@code -1}, ...) and to dead-letter-queue once the tiers are used up
+ * or the record can never succeed (malformed JSON). Tier n is processed
+ * {@code initial-delay * multiplier^n} after the failure, by its own container (RetryTierListeners).
+ */
+@Configuration
+public class KafkaErrorHandlingConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(KafkaErrorHandlingConfig.class);
+
+    public static final String DEAD_LETTER_TOPIC = "dead-letter-queue";
+    public static final String RETRY_DUE_HEADER = "retry-due-at";
+
+    private static final List<String> RETRIED_TOPICS = List.of("order-events", "payment-events");
+    private static final Pattern RETRY_TOPIC = Pattern.compile("(.+)-retry-(\\d+)");
+
+    @Value("${kafka.retry.attempts:3}")
+    private int attempts;
+
+    @Value("${kafka.retry.initial-delay:1s}")
+    private Duration initialDelay;
+
+    @Value("${kafka.retry.multiplier:2.0}")
+    private double multiplier;
+
+    @Bean
+    public DefaultErrorHandler kafkaErrorHandler(KafkaTemplate<String, String> kafkaTemplate) {
+        DeadLetterPublishingRecoverer recoverer = new DeadLetterPublishingRecoverer(kafkaTemplate,
+            (record, ex) -> {
+                if (SeekUtils.isBackoffException(ex)) {
+                    // Not due yet: no destination, so the record is sought back and replayed on resume.
+                    return null;
+                }
+                String next = nextTopic(record.topic(), ex);
+                logger.warn("Moving record {}-{}@{} to {}: {}", record.topic(), record.partition(), record.offset(), next, ex.getMessage());
+                return new TopicPartition(next, -1);
+            });
+        recoverer.setHeadersFunction((record, ex) -> {
+            Headers headers = new RecordHeaders();
+            Matcher tier = RETRY_TOPIC.matcher(nextTopic(record.topic(), ex));
+            if (tier.matches()) {
+                long dueAt = System.currentTimeMillis() + delay(Integer.parseInt(tier.group(2))).toMillis();
+                headers.add(RETRY_DUE_HEADER, ByteBuffer.allocate(Long.BYTES).putLong(dueAt).array());
+            }
+            return headers;
+        });
+        // Keep the kafka_dlt-original-* headers of the first failure instead of adding a set per tier,
+        // so they always describe the order-events/payment-events record.
+        recoverer.setAppendOriginalHeaders(false);
+        recoverer.setThrowIfNoDestinationReturned(true);
+        // No in-place retries: the backoff happens in the retry tiers.
+        return new DefaultErrorHandler(recoverer, new FixedBackOff(0L, 0L));
+    }
+
+    /**
+     * Pauses a retry-topic partition until the head record is due, then resumes it from the task scheduler.
+     */
+    @Bean
+    public KafkaConsumerBackoffManager retryBackoffManager(KafkaListenerEndpointRegistry registry, TaskScheduler taskScheduler) {
+        return new ContainerPartitionPausingBackOffManager(registry,
+            new ContainerPausingBackOffHandler(new ListenerContainerPauseService(registry, taskScheduler)));
+    }
+
+    @Bean
+    public KafkaAdmin.NewTopics retryTopics() {
+        List<NewTopic> topics = new ArrayList<>();
+        for (String topic : RETRIED_TOPICS) {
+            for (int tier = 0; tier < attempts; tier++) {
+                topics.add(TopicBuilder.name(topic + "-retry-" + tier).partitions(3).replicas(1).build());
+            }
+        }
+        return new KafkaAdmin.NewTopics(topics.toArray(new NewTopic[0]));
+    }
+
+    private String nextTopic(String topic, Exception ex) {
+        if (isPermanent(ex)) {
+            return DEAD_LETTER_TOPIC;
+        }
+        Matcher tier = RETRY_TOPIC.matcher(topic);
+        int next = tier.matches() ? Integer.parseInt(tier.group(2)) + 1 : 0;
+        String original = tier.matches() ? tier.group(1) : topic;
+        return next < attempts ? original + "-retry-" + next : DEAD_LETTER_TOPIC;
+    }
+
+    private Duration delay(int tier) {
+        return Duration.ofMillis((long) (initialDelay.toMillis() * Math.pow(multiplier, tier)));
+    }
+
+    private static boolean isPermanent(Throwable ex) {
+        for (Throwable cause = ex; cause != null; cause = cause.getCause()) {
+            if (cause instanceof JsonProcessingException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public static String originalTopic(String retryTopic) {
+        Matcher tier = RETRY_TOPIC.matcher(retryTopic);
+        return tier.matches() ? tier.group(1) : retryTopic;
+    }
+
+    public static long dueAt(ConsumerRecord<?, ?> record) {
+        Header header = record.headers().lastHeader(RETRY_DUE_HEADER);
+        return header != null ? ByteBuffer.wrap(header.value()).getLong() : record.timestamp();
+    }
+
+    /**
+     * Partition of the original record, also for records replayed from a retry topic. Reads the first
+     * original-partition header, which is the original one even on records moved between tiers
+     * before original headers stopped being appended.
+     */
+    public static int originalPartition(ConsumerRecord<?, ?> record) {
+        Iterator<Header> headers = record.headers().headers(KafkaHeaders.DLT_ORIGINAL_PARTITION).iterator();
+        return headers.hasNext() ? ByteBuffer.wrap(headers.next().value()).getInt() : record.partition();
+    }
+}
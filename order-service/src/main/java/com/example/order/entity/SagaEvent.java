@@ -2,17 +2,19 @@ package com.example.order.entity;
 
 import jakarta.persistence.*;
 import java.time.LocalDateTime;
+import java.util.UUID;
 
 @Entity
 @Table(name = "saga_events")
 public class SagaEvent {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "saga_events_id_seq")
+    @SequenceGenerator(name = "saga_events_id_seq", sequenceName = "saga_events_id_seq", allocationSize = 50)
     private Long id;
     
-    @Column(name = "saga_id", nullable = false, length = 36)
-    private String sagaId;
+    @Column(name = "saga_id", nullable = false)
+    private UUID sagaId;
     
     @Column(name = "event_type", nullable = false, length = 50)
     private String eventType;
@@ -31,7 +33,7 @@ public class SagaEvent {
         this.status = "LOGGED";
     }
 
-    public SagaEvent(String sagaId, String eventType, String eventData) {
+    public SagaEvent(UUID sagaId, String eventType, String eventData) {
         this();
         this.sagaId = sagaId;
         this.eventType = eventType;
@@ -41,8 +43,8 @@ public class SagaEvent {
     public Long getId() { return id; }
     public void setId(Long id) { this.id = id; }
 
-    public String getSagaId() { return sagaId; }
-    public void setSagaId(String sagaId) { this.sagaId = sagaId; }
+    public UUID getSagaId() { return sagaId; }
+    public void setSagaId(UUID sagaId) { this.sagaId = sagaId; }
 
     public String getEventType() { return eventType; }
     public void setEventType(String eventType) { this.eventType = eventType; }
@@ -2,17 +2,19 @@ package com.example.order.entity;
 
 import jakarta.persistence.*;
 import java.time.LocalDateTime;
+import java.util.UUID;
 
 @Entity
 @Table(name = "saga_state")
 public class SagaState {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "saga_state_id_seq")
+    @SequenceGenerator(name = "saga_state_id_seq", sequenceName = "saga_state_id_seq", allocationSize = 50)
     private Long id;
     
-    @Column(name = "saga_id", nullable = false, unique = true, length = 36)
-    private String sagaId;
+    @Column(name = "saga_id", nullable = false, unique = true)
+    private UUID sagaId;
     
     @Column(name = "order_id", nullable = false, unique = true)
     private Long orderId;
@@ -28,6 +30,10 @@ public class SagaState {
     
     @Column(name = "timeout_at")
     private LocalDateTime timeoutAt;
+
+    // order-events partition the saga was started from; decides which replica owns it
+    @Column(name = "partition_no", nullable = false)
+    private int partitionNo;
     
     @Column(name = "created_at")
     private LocalDateTime createdAt;
@@ -40,7 +46,7 @@ public class SagaState {
         this.updatedAt = LocalDateTime.now();
     }
 
-    public SagaState(String sagaId, Long orderId, String status, String currentStep) {
+    public SagaState(UUID sagaId, Long orderId, String status, String currentStep) {
         this();
         this.sagaId = sagaId;
         this.orderId = orderId;
@@ -52,8 +58,8 @@ public class SagaState {
     public Long getId() { return id; }
     public void setId(Long id) { this.id = id; }
 
-    public String getSagaId() { return sagaId; }
-    public void setSagaId(String sagaId) { this.sagaId = sagaId; }
+    public UUID getSagaId() { return sagaId; }
+    public void setSagaId(UUID sagaId) { this.sagaId = sagaId; }
 
     public Long getOrderId() { return orderId; }
     public void setOrderId(Long orderId) { this.orderId = orderId; }
@@ -76,6 +82,9 @@ public class SagaState {
     public LocalDateTime getTimeoutAt() { return timeoutAt; }
     public void setTimeoutAt(LocalDateTime timeoutAt) { this.timeoutAt = timeoutAt; }
 
+    public int getPartitionNo() { return partitionNo; }
+    public void setPartitionNo(int partitionNo) { this.partitionNo = partitionNo; }
+
     public LocalDateTime getCreatedAt() { return createdAt; }
     public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
 
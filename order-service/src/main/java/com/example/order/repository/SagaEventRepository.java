@@ -5,8 +5,9 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
+import java.util.UUID;
 
 @Repository
 public interface SagaEventRepository extends JpaRepository<SagaEvent, Long> {
-    List<SagaEvent> findBySagaIdOrderByCreatedAtAsc(String sagaId);
+    List<SagaEvent> findBySagaIdOrderByCreatedAtAsc(UUID sagaId);
 }
@@ -2,11 +2,47 @@ package com.example.order.repository;
 
 import com.example.order.entity.SagaState;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.UUID;
 
 @Repository
 public interface SagaStateRepository extends JpaRepository<SagaState, Long> {
     Optional<SagaState> findByOrderId(Long orderId);
+
+    List<SagaState> findByOrderIdIn(Collection<Long> orderIds);
+
+    @Query("SELECT s.partitionNo AS partitionNo, s.status AS status, COUNT(s) AS count FROM SagaState s "
+         + "WHERE s.partitionNo IN :partitions GROUP BY s.partitionNo, s.status")
+    List<StatusCount> countByStatus(@Param("partitions") Collection<Integer> partitions);
+
+    @Query("SELECT s.sagaId FROM SagaState s WHERE s.sagaId IN :sagaIds")
+    List<UUID> findExistingSagaIds(@Param("sagaIds") Collection<UUID> sagaIds);
+
+    // Both served by the (status, partition_no, timeout_at) index
+    @Query("SELECT s.orderId AS orderId, s.partitionNo AS partitionNo, s.timeoutAt AS timeoutAt FROM SagaState s "
+         + "WHERE s.status = :status AND s.partitionNo IN :partitions AND s.timeoutAt IS NOT NULL")
+    List<Deadline> findDeadlines(@Param("status") String status, @Param("partitions") Collection<Integer> partitions);
+
+    @Query("SELECT s.orderId FROM SagaState s WHERE s.status = :status AND s.partitionNo IN :partitions AND s.timeoutAt < :before")
+    List<Long> findOrderIdsTimedOutBefore(@Param("status") String status, @Param("partitions") Collection<Integer> partitions,
+                                          @Param("before") LocalDateTime before);
+
+    interface StatusCount {
+        Integer getPartitionNo();
+        String getStatus();
+        long getCount();
+    }
+
+    interface Deadline {
+        Long getOrderId();
+        Integer getPartitionNo();
+        LocalDateTime getTimeoutAt();
+    }
 }
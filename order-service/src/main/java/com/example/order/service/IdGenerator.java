@@ -0,0 +1,37 @@
+package com.example.order.service;
+
+import org.springframework.stereotype.Component;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generates time-ordered UUIDv7 ids (RFC 9562): a 48-bit Unix millisecond timestamp, a 12-bit
+ * counter that keeps ids from this instance ordered within a millisecond, and 62 random bits.
+ * Lock-free, and unlike UUID.randomUUID() it does not draw on SecureRandom; new ids land at the
+ * right-hand edge of B-tree indexes instead of on random pages.
+ */
+@Component
+public class IdGenerator {
+
+    private static final int COUNTER_BITS = 12;
+
+    // Last issued (millis << COUNTER_BITS | counter). A counter overflow borrows the next
+    // millisecond, and a clock that steps back keeps counting from the last id.
+    private final AtomicLong lastTimestampAndCounter = new AtomicLong();
+
+    public UUID nextUuid() {
+        long now = System.currentTimeMillis() << COUNTER_BITS;
+        long next = lastTimestampAndCounter.updateAndGet(last -> Math.max(now, last + 1));
+        long millis = next >>> COUNTER_BITS;
+        long counter = next & ((1L << COUNTER_BITS) - 1);
+        long mostSigBits = (millis << 16) | 0x7000L | counter;
+        long leastSigBits = (ThreadLocalRandom.current().nextLong() & 0x3FFFFFFFFFFFFFFFL) | 0x8000000000000000L;
+        return new UUID(mostSigBits, leastSigBits);
+    }
+
+    public String nextId() {
+        return nextUuid().toString();
+    }
+}
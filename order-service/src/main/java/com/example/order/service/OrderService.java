@@ -1,27 +1,57 @@
 package com.example.order.service;
 
+import com.example.order.config.KafkaErrorHandlingConfig;
 import com.example.order.dto.OrderResponse;
 import com.example.order.entity.Order;
+import com.example.order.entity.SagaEvent;
 import com.example.order.entity.SagaState;
 import com.example.order.repository.OrderRepository;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.Header;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.listener.BatchListenerFailedException;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 
 import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 @Service
 public class OrderService {
 
     private static final Logger logger = LoggerFactory.getLogger(OrderService.class);
+    private static final String ORDER_RESPONSE_TOPIC = "order-response";
+    private static final Set<String> PAYMENT_EVENT_TYPES = Set.of("PaymentProcessed", "PaymentFailed", "PaymentCancelled");
     
     @Autowired
     private ObjectMapper objectMapper;
@@ -32,118 +62,302 @@ public class OrderService {
     @Autowired
     private OrderRepository orderRepository;
 
+    @Autowired
+    private OrderStatusPublisher orderStatusPublisher;
+
+    @Autowired
+    private IdGenerator idGenerator;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private OutboxService outboxService;
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    @Value("${kafka.consumer.parallelism:4}")
+    private int parallelism;
+
+    @Value("${spring.kafka.listener.concurrency:1}")
+    private int concurrency;
+
+    private ExecutorService orderShardExecutor;
+    private ExecutorService paymentShardExecutor;
+
+    @PostConstruct
+    public void startShardExecutors() {
+        orderShardExecutor = newShardExecutor("order-shard-");
+        paymentShardExecutor = newShardExecutor("payment-shard-");
+    }
+
+    // One executor per listener container, so a slow shard of one never holds up the other. Each
+    // of the container's consumer threads runs one shard itself and up to parallelism - 1 here.
+    private ExecutorService newShardExecutor(String prefix) {
+        ThreadFactory threadFactory = virtualThreads
+            ? Thread.ofVirtual().name(prefix, 0).factory()
+            : new CustomizableThreadFactory(prefix);
+        return Executors.newFixedThreadPool(Math.max(1, concurrency * (parallelism - 1)), threadFactory);
+    }
+
+    @PreDestroy
+    public void stopShardExecutors() {
+        orderShardExecutor.shutdown();
+        paymentShardExecutor.shutdown();
+    }
+
+    // Records of one poll are split by key (sagaId for new orders, orderId for payments) into up
+    // to kafka.consumer.parallelism shards, which run in parallel with one transaction each, so
+    // records for the same order are still applied in order. If a shard's transaction fails, its
+    // records are retried one at a time and the shard stops at the first one that still fails.
+    // Offsets are committed once per batch (spring.kafka.listener.type=batch), and only up to the
+    // lowest failed record: it is reported with BatchListenerFailedException, the container error
+    // handler moves it to a retry topic (KafkaErrorHandlingConfig) and redelivers the records after
+    // it. Redelivered records that other shards already applied are recognised and skipped.
     @KafkaListener(topics = "order-events", groupId = "order-service-group")
-    public void handleOrderEvent(String message) {
-        try {
-            logger.info("Received order event: {}", message);
-            
-            JsonNode event = objectMapper.readTree(message);
-            String eventType = event.get("eventType").asText();
-            
-            if ("OrderCreated".equals(eventType)) {
-                processOrderCreated(event);
+    public void handleOrderEvents(List<ConsumerRecord<String, String>> records) {
+        logger.info("Received {} order events", records.size());
+
+        List<NewOrder> newOrders = new ArrayList<>();
+        for (ConsumerRecord<String, String> record : records) {
+            try {
+                JsonNode event = objectMapper.readTree(record.value());
+                if ("OrderCreated".equals(event.get("eventType").asText())) {
+                    newOrders.add(parseOrderCreated(record, event));
+                }
+            } catch (Exception e) {
+                logger.error("Error processing order event: {}", record.value(), e);
+                applyInBatch(orderShardExecutor, newOrders, NewOrder::sagaId, this::createOrders, this::announceCreated, NewOrder::record);
+                throw new BatchListenerFailedException("Invalid order event", e, record);
             }
-            
-        } catch (JsonProcessingException e) {
-            logger.error("Error processing order event: {}", message, e);
-            sendToDeadLetterQueue(message, "JsonProcessingException", e.getMessage());
-        } catch (Exception e) {
-            logger.error("Unexpected error processing order event: {}", message, e);
-            sendToDeadLetterQueue(message, "UnexpectedException", e.getMessage());
         }
+
+        applyInBatch(orderShardExecutor, newOrders, NewOrder::sagaId, this::createOrders, this::announceCreated, NewOrder::record);
     }
 
     @KafkaListener(topics = "payment-events", groupId = "order-service-group")
-    public void handlePaymentEvent(String message) {
-        try {
-            logger.info("Received payment event: {}", message);
-            
-            JsonNode event = objectMapper.readTree(message);
-            String eventType = event.get("eventType").asText();
-            
-            if ("PaymentProcessed".equals(eventType)) {
-                processPaymentSuccess(event);
-            } else if ("PaymentFailed".equals(eventType)) {
-                processPaymentFailure(event);
-            } else if ("PaymentCancelled".equals(eventType)) {
-                processPaymentCancelled(event);
+    public void handlePaymentEvents(List<ConsumerRecord<String, String>> records) {
+        logger.info("Received {} payment events", records.size());
+
+        List<PaymentUpdate> updates = new ArrayList<>();
+        for (ConsumerRecord<String, String> record : records) {
+            try {
+                JsonNode event = objectMapper.readTree(record.value());
+                String eventType = event.get("eventType").asText();
+                if (PAYMENT_EVENT_TYPES.contains(eventType)) {
+                    Long paymentId = event.has("paymentId") ? event.get("paymentId").asLong() : null;
+                    updates.add(new PaymentUpdate(eventType, event.get("orderId").asLong(), paymentId, record));
+                }
+            } catch (Exception e) {
+                logger.error("Error processing payment event: {}", record.value(), e);
+                applyInBatch(paymentShardExecutor, updates, PaymentUpdate::orderId, this::applyPaymentUpdates, this::announceStatusChange, PaymentUpdate::record);
+                throw new BatchListenerFailedException("Invalid payment event", e, record);
             }
-            
-        } catch (Exception e) {
-            logger.error("Error processing payment event: {}", message, e);
-            sendToDeadLetterQueue(message, "PaymentEventException", e.getMessage());
         }
+
+        applyInBatch(paymentShardExecutor, updates, PaymentUpdate::orderId, this::applyPaymentUpdates, this::announceStatusChange, PaymentUpdate::record);
     }
 
-    private void processPaymentSuccess(JsonNode event) {
-        Long orderId = event.get("orderId").asLong();
-        Long paymentId = event.get("paymentId").asLong();
-        logger.info("Payment successful for order: {}, payment: {}", orderId, paymentId);
-        
-        sagaOrchestrator.processPayment(orderId, paymentId);
-        sagaOrchestrator.completeSaga(orderId);
-        
-        Optional<Order> orderOpt = orderRepository.findById(orderId);
-        if (orderOpt.isPresent()) {
-            Order order = orderOpt.get();
-            order.setStatus("COMPLETED");
-            orderRepository.save(order);
-            logger.info("Order {} status updated to COMPLETED", orderId);
+    // Replays a record from a retry topic once its backoff is due (see RetryTierListeners).
+    public void handleRetry(ConsumerRecord<String, String> record) {
+        if ("order-events".equals(KafkaErrorHandlingConfig.originalTopic(record.topic()))) {
+            handleOrderEvents(List.of(record));
+        } else {
+            handlePaymentEvents(List.of(record));
         }
     }
 
-    private void processPaymentFailure(JsonNode event) {
-        Long orderId = event.get("orderId").asLong();
-        logger.error("Payment failed for order: {}", orderId);
-        
-        sagaOrchestrator.failSaga(orderId);
-        
-        Optional<Order> orderOpt = orderRepository.findById(orderId);
-        if (orderOpt.isPresent()) {
-            Order order = orderOpt.get();
-            order.setStatus("FAILED");
-            orderRepository.save(order);
-            logger.info("Order {} status updated to FAILED", orderId);
+    <T, R> void applyInBatch(ExecutorService shardExecutor, List<T> items, Function<T, Object> key, Function<List<T>, List<R>> apply,
+                             Consumer<R> afterCommit, Function<T, ConsumerRecord<String, String>> record) {
+        if (items.isEmpty()) {
+            return;
+        }
+        int shardCount = Math.min(Math.max(parallelism, 1), items.size());
+        List<List<T>> shards = new ArrayList<>(shardCount);
+        for (int i = 0; i < shardCount; i++) {
+            shards.add(new ArrayList<>());
+        }
+        for (T item : items) {
+            shards.get(Math.floorMod(key.apply(item).hashCode(), shardCount)).add(item);
+        }
+
+        List<CompletableFuture<ShardFailure<T>>> pending = new ArrayList<>(shardCount - 1);
+        for (List<T> shard : shards.subList(1, shardCount)) {
+            if (!shard.isEmpty()) {
+                pending.add(CompletableFuture.supplyAsync(() -> applyShard(shard, apply, afterCommit, record), shardExecutor));
+            }
         }
+        List<ShardFailure<T>> failures = new ArrayList<>();
+        Optional.ofNullable(applyShard(shards.get(0), apply, afterCommit, record)).ifPresent(failures::add);
+        pending.forEach(future -> Optional.ofNullable(future.join()).ifPresent(failures::add));
+
+        failures.stream()
+            .min(Comparator.comparingInt(failure -> items.indexOf(failure.item())))
+            .ifPresent(failure -> {
+                throw new BatchListenerFailedException(failure.error().getMessage(), failure.error(), record.apply(failure.item()));
+            });
     }
 
-    private void processPaymentCancelled(JsonNode event) {
-        Long orderId = event.get("orderId").asLong();
-        logger.info("Payment cancelled for order: {}", orderId);
-        
-        sagaOrchestrator.refundPayment(orderId);
-        
-        Optional<Order> orderOpt = orderRepository.findById(orderId);
-        if (orderOpt.isPresent()) {
-            Order order = orderOpt.get();
-            order.setStatus("REFUNDED");
-            orderRepository.save(order);
-            logger.info("Order {} status updated to REFUNDED", orderId);
+    // Returns the first item of the shard that could not be applied, or null.
+    private <T, R> ShardFailure<T> applyShard(List<T> items, Function<List<T>, List<R>> apply, Consumer<R> afterCommit,
+                                              Function<T, ConsumerRecord<String, String>> record) {
+        if (items.isEmpty()) {
+            return null;
+        }
+        try {
+            transactionTemplate.execute(status -> apply.apply(items)).forEach(afterCommit);
+            return null;
+        } catch (Exception batchError) {
+            logger.warn("Batch of {} events failed, retrying them one by one: {}", items.size(), batchError.getMessage());
+        }
+        for (T item : items) {
+            try {
+                transactionTemplate.execute(status -> apply.apply(List.of(item))).forEach(afterCommit);
+            } catch (Exception e) {
+                logger.error("Error processing event: {}", record.apply(item).value(), e);
+                return new ShardFailure<>(item, e);
+            }
         }
+        return null;
+    }
+
+    private NewOrder parseOrderCreated(ConsumerRecord<String, String> record, JsonNode event) {
+        Header replyTopic = record.headers().lastHeader(KafkaHeaders.REPLY_TOPIC);
+        Header replyPartition = record.headers().lastHeader(KafkaHeaders.REPLY_PARTITION);
+        return new NewOrder(
+            event.get("customerId").asText(),
+            event.get("productId").asText(),
+            event.get("quantity").asInt(),
+            new BigDecimal(event.get("amount").asText()),
+            event.has("correlationId") ? event.get("correlationId").asText() : null,
+            event.has("sagaId") ? UUID.fromString(event.get("sagaId").asText()) : idGenerator.nextUuid(),
+            replyTopic != null ? new String(replyTopic.value(), StandardCharsets.UTF_8) : ORDER_RESPONSE_TOPIC,
+            replyPartition != null ? ByteBuffer.wrap(replyPartition.value()).getInt() : null,
+            record);
     }
 
-    private void processOrderCreated(JsonNode event) {
-        String customerId = event.get("customerId").asText();
-        String productId = event.get("productId").asText();
-        Integer quantity = event.get("quantity").asInt();
-        BigDecimal amount = new BigDecimal(event.get("amount").asText());
-        String correlationId = event.has("correlationId") ? event.get("correlationId").asText() : null;
-        String sagaId = event.has("sagaId") ? event.get("sagaId").asText() : java.util.UUID.randomUUID().toString();
+    private List<CreatedOrder> createOrders(List<NewOrder> newOrders) {
+        Set<UUID> sagaIds = new HashSet<>();
+        newOrders.forEach(newOrder -> sagaIds.add(newOrder.sagaId()));
+        Set<UUID> existing = sagaOrchestrator.findExistingSagaIds(sagaIds);
+        if (!existing.isEmpty()) {
+            logger.info("Skipping {} already processed OrderCreated events", existing.size());
+            newOrders = newOrders.stream().filter(newOrder -> !existing.contains(newOrder.sagaId())).toList();
+        }
+
+        List<Order> orders = new ArrayList<>(newOrders.size());
+        for (NewOrder newOrder : newOrders) {
+            orders.add(new Order(newOrder.customerId(), newOrder.productId(), newOrder.quantity(), newOrder.amount(), "WAITING"));
+        }
+        orders = orderRepository.saveAll(orders);
 
-        Order order = new Order(customerId, productId, quantity, amount, "WAITING");
-        order = orderRepository.save(order);
-        Long orderId = order.getId();
+        List<SagaState> sagas = new ArrayList<>(newOrders.size());
+        List<SagaEvent> sagaEvents = new ArrayList<>(newOrders.size());
+        List<CreatedOrder> created = new ArrayList<>(newOrders.size());
+        for (int i = 0; i < newOrders.size(); i++) {
+            NewOrder newOrder = newOrders.get(i);
+            Long orderId = orders.get(i).getId();
+            sagas.add(sagaOrchestrator.newSaga(newOrder.sagaId(), orderId, newOrder.customerId(), newOrder.amount(),
+                KafkaErrorHandlingConfig.originalPartition(newOrder.record()), sagaEvents));
+            created.add(new CreatedOrder(orderId, newOrder));
+        }
+        sagaOrchestrator.saveAll(sagas, sagaEvents);
 
-        logger.info("Order created with ID: {} with status WAITING, sagaId: {}", orderId, sagaId);
+        for (CreatedOrder order : created) {
+            NewOrder newOrder = order.request();
+            orderStatusPublisher.publishStatusChanged(order.orderId(), "WAITING");
+            if (newOrder.correlationId() != null) {
+                publishOrderCreatedResponse(order.orderId(), newOrder.correlationId(), newOrder.sagaId().toString(),
+                    newOrder.replyTopic(), newOrder.replyPartition());
+            }
+        }
+        return created;
+    }
+
+    private void announceCreated(CreatedOrder created) {
+        logger.info("Order created with ID: {} with status WAITING, sagaId: {}", created.orderId(), created.request().sagaId());
+    }
 
-        sagaOrchestrator.startSagaWithId(sagaId, orderId, customerId, productId, quantity, amount);
+    private List<StatusChange> applyPaymentUpdates(List<PaymentUpdate> updates) {
+        Set<Long> orderIds = new HashSet<>();
+        updates.forEach(update -> orderIds.add(update.orderId()));
+        Map<Long, Order> orders = new HashMap<>();
+        orderRepository.findAllById(orderIds).forEach(order -> orders.put(order.getId(), order));
+        Map<Long, SagaState> sagas = sagaOrchestrator.findSagasByOrderIds(orderIds);
 
-        if (correlationId != null) {
-            publishOrderCreatedResponse(orderId, correlationId, sagaId);
+        List<SagaEvent> sagaEvents = new ArrayList<>();
+        List<StatusChange> changes = new ArrayList<>();
+        for (PaymentUpdate update : updates) {
+            SagaState saga = sagas.get(update.orderId());
+            if (saga == null) {
+                throw new NoSuchElementException("No saga for order: " + update.orderId());
+            }
+            if (alreadyApplied(update, saga)) {
+                logger.info("Skipping already applied {} for order: {}", update.eventType(), update.orderId());
+                continue;
+            }
+            String status;
+            switch (update.eventType()) {
+                case "PaymentProcessed" -> {
+                    logger.info("Payment successful for order: {}, payment: {}", update.orderId(), update.paymentId());
+                    sagaOrchestrator.markPaymentProcessing(saga, update.paymentId(), sagaEvents);
+                    sagaOrchestrator.markCompleted(saga, sagaEvents);
+                    status = "COMPLETED";
+                }
+                case "PaymentFailed" -> {
+                    logger.error("Payment failed for order: {}", update.orderId());
+                    sagaOrchestrator.markFailed(saga, sagaEvents);
+                    status = "FAILED";
+                }
+                default -> {
+                    logger.info("Payment cancelled for order: {}", update.orderId());
+                    sagaOrchestrator.markRefunded(saga, sagaEvents);
+                    status = "REFUNDED";
+                }
+            }
+            Order order = orders.get(update.orderId());
+            if (order != null) {
+                order.setStatus(status);
+                changes.add(new StatusChange(update.orderId(), status));
+            }
         }
+
+        sagaOrchestrator.saveAll(sagas.values(), sagaEvents);
+        orderRepository.saveAll(orders.values());
+        changes.forEach(change -> orderStatusPublisher.publishStatusChanged(change.orderId(), change.status()));
+        return changes;
+    }
+
+    private boolean alreadyApplied(PaymentUpdate update, SagaState saga) {
+        return switch (update.eventType()) {
+            case "PaymentProcessed" -> "COMPLETED".equals(saga.getStatus()) && Objects.equals(saga.getPaymentId(), update.paymentId());
+            case "PaymentFailed" -> "FAILED".equals(saga.getStatus());
+            default -> "REFUNDED".equals(saga.getStatus());
+        };
+    }
+
+    private void announceStatusChange(StatusChange change) {
+        logger.info("Order {} status updated to {}", change.orderId(), change.status());
+    }
+
+    private record NewOrder(String customerId, String productId, Integer quantity, BigDecimal amount, String correlationId,
+                            UUID sagaId, String replyTopic, Integer replyPartition, ConsumerRecord<String, String> record) {
+    }
+
+    private record CreatedOrder(Long orderId, NewOrder request) {
+    }
+
+    private record PaymentUpdate(String eventType, Long orderId, Long paymentId, ConsumerRecord<String, String> record) {
     }
 
-    private void publishOrderCreatedResponse(Long orderId, String correlationId, String sagaId) {
+    private record StatusChange(Long orderId, String status) {
+    }
+
+    private record ShardFailure<T>(T item, Exception error) {
+    }
+
+    private void publishOrderCreatedResponse(Long orderId, String correlationId, String sagaId, String replyTopic, Integer replyPartition) {
         try {
             Map<String, Object> response = new HashMap<>();
             response.put("orderId", orderId);
@@ -152,19 +366,9 @@ public class OrderService {
             response.put("status", "PENDING");
 
             String responseJson = objectMapper.writeValueAsString(response);
-            org.springframework.kafka.core.KafkaTemplate<String, String> kafkaTemplate = 
-                new org.springframework.kafka.core.KafkaTemplate<>(
-                    new org.springframework.kafka.core.DefaultKafkaProducerFactory<>(
-                        Map.of(
-                            "bootstrap.servers", "kafka:29092",
-                            "key.serializer", "org.apache.kafka.common.serialization.StringSerializer",
-                            "value.serializer", "org.apache.kafka.common.serialization.StringSerializer"
-                        )
-                    )
-                );
-            kafkaTemplate.send("order-response", correlationId, responseJson);
-            logger.info("Published order response for orderId: {}", orderId);
-        } catch (Exception e) {
+            outboxService.enqueue(replyTopic, replyPartition, correlationId, responseJson);
+            logger.info("Queued order response for orderId: {} to {}-{}", orderId, replyTopic, replyPartition);
+        } catch (JsonProcessingException e) {
             logger.error("Failed to publish order response", e);
         }
     }
@@ -174,71 +378,45 @@ public class OrderService {
         if (orderOpt.isEmpty()) {
             return false;
         }
-        
-        Order order = orderOpt.get();
-        if ("COMPLETED".equals(order.getStatus()) || "CANCELLED".equals(order.getStatus())) {
-            logger.warn("Cannot cancel order {} with status {}", orderId, order.getStatus());
+        if (!isCancellable(orderOpt.get())) {
             return false;
         }
-        
-        order.setStatus("CANCELLED");
-        orderRepository.save(order);
-        
+
         Optional<SagaState> sagaOpt = sagaOrchestrator.getSagaState(orderId);
-        if (sagaOpt.isPresent()) {
-            SagaState saga = sagaOpt.get();
-            sagaOrchestrator.compensate(saga);
-        }
-        
-        logger.info("Order {} cancelled successfully", orderId);
-        return true;
-    }
+        boolean paymentCancelled = sagaOpt.map(sagaOrchestrator::cancelPayment).orElse(false);
 
-    public OrderResponse getOrder(Long orderId) {
-        Optional<Order> orderOpt = orderRepository.findById(orderId);
-        if (orderOpt.isPresent()) {
-            Order order = orderOpt.get();
-            Optional<SagaState> sagaState = sagaOrchestrator.getSagaState(order.getId());
-            if (sagaState.isPresent()) {
-                String sagaStatus = sagaState.get().getStatus();
-                if ("NO_PAYMENT".equals(sagaStatus)) {
-                    order.setStatus("FAILED");
-                    orderRepository.save(order);
-                }
+        // Order status, saga compensation and their outbox events commit together
+        Boolean cancelled = transactionTemplate.execute(status -> {
+            Order order = orderRepository.findById(orderId).orElse(null);
+            if (order == null || !isCancellable(order)) {
+                return false;
             }
-            return new OrderResponse(order.getId(), order.getCustomerId(), order.getProductId(), 
-                order.getQuantity(), order.getAmount(), order.getStatus());
+            order.setStatus("CANCELLED");
+            orderRepository.save(order);
+            orderStatusPublisher.publishStatusChanged(orderId, "CANCELLED");
+
+            sagaOrchestrator.getSagaState(orderId).ifPresent(saga -> sagaOrchestrator.compensate(saga, paymentCancelled));
+            return true;
+        });
+
+        if (Boolean.TRUE.equals(cancelled)) {
+            logger.info("Order {} cancelled successfully", orderId);
         }
-        return null;
+        return Boolean.TRUE.equals(cancelled);
     }
 
-    private void sendToDeadLetterQueue(String originalMessage, String errorType, String errorMessage) {
-        try {
-            Map<String, Object> dlqMessage = new HashMap<>();
-            dlqMessage.put("originalMessage", originalMessage);
-            dlqMessage.put("errorType", errorType);
-            dlqMessage.put("errorMessage", errorMessage);
-            dlqMessage.put("service", "order-service");
-            dlqMessage.put("timestamp", java.time.Instant.now().toString());
-            
-            String dlqJson = objectMapper.writeValueAsString(dlqMessage);
-            
-            org.springframework.kafka.core.KafkaTemplate<String, String> kafkaTemplate = 
-                new org.springframework.kafka.core.KafkaTemplate<>(
-                    new org.springframework.kafka.core.DefaultKafkaProducerFactory<>(
-                        Map.of(
-                            "bootstrap.servers", "kafka:29092",
-                            "key.serializer", "org.apache.kafka.common.serialization.StringSerializer",
-                            "value.serializer", "org.apache.kafka.common.serialization.StringSerializer"
-                        )
-                    )
-                );
-            
-            kafkaTemplate.send("dead-letter-queue", dlqJson);
-            logger.info("Sent failed message to dead-letter-queue");
-            
-        } catch (Exception e) {
-            logger.error("Failed to send message to dead-letter-queue", e);
+    private boolean isCancellable(Order order) {
+        if ("COMPLETED".equals(order.getStatus()) || "CANCELLED".equals(order.getStatus())) {
+            logger.warn("Cannot cancel order {} with status {}", order.getId(), order.getStatus());
+            return false;
         }
+        return true;
+    }
+
+    public OrderResponse getOrder(Long orderId) {
+        return orderRepository.findById(orderId)
+            .map(order -> new OrderResponse(order.getId(), order.getCustomerId(), order.getProductId(),
+                order.getQuantity(), order.getAmount(), order.getStatus()))
+            .orElse(null);
     }
 }
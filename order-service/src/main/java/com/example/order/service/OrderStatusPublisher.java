@@ -0,0 +1,46 @@
+package com.example.order.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Publishes an OrderStatusChanged event whenever an order's status changes, keyed by orderId
+ * so every change for one order lands on the same partition in order. order-gateway streams
+ * these to clients waiting on GET /api/orders/{id}/events.
+ */
+@Service
+public class OrderStatusPublisher {
+
+    private static final Logger logger = LoggerFactory.getLogger(OrderStatusPublisher.class);
+    public static final String ORDER_STATUS_TOPIC = "order-status-events";
+
+    @Autowired
+    private OutboxService outboxService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    public void publishStatusChanged(Long orderId, String status) {
+        try {
+            Map<String, Object> event = new HashMap<>();
+            event.put("eventType", "OrderStatusChanged");
+            event.put("orderId", orderId);
+            event.put("status", status);
+            event.put("timestamp", Instant.now().toString());
+
+            String eventJson = objectMapper.writeValueAsString(event);
+            outboxService.enqueue(ORDER_STATUS_TOPIC, null, orderId.toString(), eventJson);
+            logger.debug("Queued OrderStatusChanged for order: {} status: {}", orderId, status);
+        } catch (JsonProcessingException e) {
+            logger.error("Error publishing order status event for order: {}", orderId, e);
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.example.order.service;
+
+import com.example.order.entity.OutboxEvent;
+import com.example.order.repository.OutboxRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Records an event for publishing in the outbox table instead of sending it to Kafka directly.
+ * It must be called inside the transaction of the state change that caused it (enforced with
+ * MANDATORY propagation), so the event commits or rolls back with it; OutboxRelay then publishes it.
+ */
+@Service
+public class OutboxService {
+
+    @Autowired
+    private OutboxRepository outboxRepository;
+
+    @Value("${spring.application.name}")
+    private String source;
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void enqueue(String topic, Integer partition, String key, String payload) {
+        outboxRepository.save(new OutboxEvent(source, topic, partition, key, payload));
+    }
+}
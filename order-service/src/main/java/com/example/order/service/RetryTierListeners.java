@@ -0,0 +1,84 @@
+package com.example.order.service;
+
+import com.example.order.config.KafkaErrorHandlingConfig;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.annotation.KafkaListenerConfigurer;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistrar;
+import org.springframework.kafka.config.MethodKafkaListenerEndpoint;
+import org.springframework.kafka.listener.KafkaConsumerBackoffManager;
+import org.springframework.messaging.handler.annotation.support.DefaultMessageHandlerMethodFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ReflectionUtils;
+
+import jakarta.annotation.PostConstruct;
+
+import java.lang.reflect.Method;
+
+/**
+ * One listener container per retry tier, consuming {@code order-events-retry-N} and
+ * {@code payment-events-retry-N}. A record whose backoff is not yet due pauses only its own
+ * partition until the due time (KafkaBackoffException, the record is fetched again on resume), so a
+ * waiting tier never holds up the other tiers or the records on its other partitions.
+ */
+@Component
+public class RetryTierListeners implements KafkaListenerConfigurer {
+
+    private static final Logger logger = LoggerFactory.getLogger(RetryTierListeners.class);
+    private static final String GROUP_ID = "order-service-group";
+    private static final Method LISTEN_METHOD =
+        ReflectionUtils.findMethod(TierListener.class, "listen", ConsumerRecord.class, Consumer.class);
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private KafkaConsumerBackoffManager retryBackoffManager;
+
+    @Value("${kafka.retry.attempts:3}")
+    private int attempts;
+
+    private final DefaultMessageHandlerMethodFactory handlerMethodFactory = new DefaultMessageHandlerMethodFactory();
+
+    @PostConstruct
+    public void init() {
+        handlerMethodFactory.afterPropertiesSet();
+    }
+
+    @Override
+    public void configureKafkaListeners(KafkaListenerEndpointRegistrar registrar) {
+        for (int tier = 0; tier < attempts; tier++) {
+            String listenerId = "order-service-retry-" + tier;
+            MethodKafkaListenerEndpoint<String, String> endpoint = new MethodKafkaListenerEndpoint<>();
+            endpoint.setId(listenerId);
+            endpoint.setGroupId(GROUP_ID);
+            endpoint.setTopics("order-events-retry-" + tier, "payment-events-retry-" + tier);
+            endpoint.setBatchListener(false);
+            endpoint.setBean(new TierListener(listenerId));
+            endpoint.setMethod(LISTEN_METHOD);
+            endpoint.setMessageHandlerMethodFactory(handlerMethodFactory);
+            registrar.registerEndpoint(endpoint);
+        }
+    }
+
+    public class TierListener {
+        private final String listenerId;
+
+        TierListener(String listenerId) {
+            this.listenerId = listenerId;
+        }
+
+        public void listen(ConsumerRecord<String, String> record, Consumer<?, ?> consumer) {
+            // Throws KafkaBackoffException after pausing the partition if the record is not due yet.
+            retryBackoffManager.backOffIfNecessary(retryBackoffManager.createContext(KafkaErrorHandlingConfig.dueAt(record),
+                listenerId, new TopicPartition(record.topic(), record.partition()), consumer));
+            logger.info("Retrying record {}-{}@{}", record.topic(), record.partition(), record.offset());
+            orderService.handleRetry(record);
+        }
+    }
+}
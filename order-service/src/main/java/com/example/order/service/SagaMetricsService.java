@@ -1,57 +1,145 @@
 package com.example.order.service;
 
 import com.example.order.repository.SagaStateRepository;
+import io.micrometer.core.instrument.Gauge;
 import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import jakarta.annotation.PostConstruct;
 
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Saga counts per status, kept up to date by SagaOrchestrator reporting every status change
+ * (applied once its transaction commits) instead of loading the saga_state table. Each replica only
+ * counts the sagas of the partitions it owns (SagaPartitionOwnership), keeping the counts per
+ * partition: those of a partition are loaded when it is taken over and dropped when it is revoked,
+ * and a periodic GROUP BY query resets them to the database's, so summing the gauges over all
+ * replicas gives the totals even across rebalances. Ratios such as the success rate are computed
+ * from the summed gauges in the dashboard.
+ */
 @Service
 public class SagaMetricsService {
 
+    private static final List<String> STATUSES = List.of("WAITING", "PROCESSING", "COMPLETED", "FAILED", "NO_PAYMENT", "REFUNDED", "COMPENSATING");
+    private static final AtomicLong ZERO = new AtomicLong();
+
     @Autowired
     private SagaStateRepository sagaStateRepository;
 
     @Autowired
-    private MeterRegistry meterRegistry;
+    private SagaPartitionOwnership sagaPartitionOwnership;
 
-    private final AtomicInteger totalGauge = new AtomicInteger(0);
-    private final AtomicInteger completedGauge = new AtomicInteger(0);
-    private final AtomicInteger failedGauge = new AtomicInteger(0);
-    private final AtomicInteger processingGauge = new AtomicInteger(0);
-    private final AtomicInteger successRateGauge = new AtomicInteger(0);
+    private final MeterRegistry meterRegistry;
+    private final Set<String> statuses = ConcurrentHashMap.newKeySet();
+    private final Map<Integer, Map<String, AtomicLong>> countsByPartition = new ConcurrentHashMap<>();
 
     public SagaMetricsService(MeterRegistry meterRegistry) {
         this.meterRegistry = meterRegistry;
-        meterRegistry.gauge("saga_total", totalGauge);
-        meterRegistry.gauge("saga_completed", completedGauge);
-        meterRegistry.gauge("saga_failed", failedGauge);
-        meterRegistry.gauge("saga_processing", processingGauge);
-        meterRegistry.gauge("saga_success_rate", successRateGauge);
+        STATUSES.forEach(this::registerStatus);
+        meterRegistry.gauge("saga_total", countsByPartition, counts -> total());
+        meterRegistry.gauge("saga_completed", countsByPartition, counts -> count("COMPLETED"));
+        meterRegistry.gauge("saga_failed", countsByPartition, counts -> count("FAILED"));
+        meterRegistry.gauge("saga_processing", countsByPartition, counts -> count("PROCESSING"));
+    }
+
+    @PostConstruct
+    public void followOwnership() {
+        sagaPartitionOwnership.onAssigned(this::reconcile);
+        sagaPartitionOwnership.onRevoked(partitions -> countsByPartition.keySet().removeAll(partitions));
+    }
+
+    /**
+     * Records a saga of order-events {@code partition} moving from one status to another ({@code from}
+     * is null for a new saga). Ignored unless this replica owns the partition. Inside a transaction the
+     * change is applied after commit, so rolled-back work is not counted.
+     */
+    public void recordTransition(int partition, String from, String to) {
+        if (!sagaPartitionOwnership.owns(partition)) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    applyTransition(partition, from, to);
+                }
+            });
+        } else {
+            applyTransition(partition, from, to);
+        }
+    }
+
+    private void applyTransition(int partition, String from, String to) {
+        // Counter per target status, for transition rates
+        meterRegistry.counter("saga_transitions", "status", to).increment();
+        // The partition may have been revoked while the transaction was committing
+        if (!sagaPartitionOwnership.owns(partition)) {
+            return;
+        }
+        if (from != null) {
+            counter(partition, from).decrementAndGet();
+        }
+        counter(partition, to).incrementAndGet();
     }
 
-    @Scheduled(fixedDelay = 10000)
+    @Scheduled(fixedDelayString = "${saga.metrics.reconcile-interval:60000}")
     public void updateMetrics() {
-        long total = sagaStateRepository.count();
-        long completed = sagaStateRepository.findAll().stream()
-            .filter(s -> "COMPLETED".equals(s.getStatus()))
-            .count();
-        long failed = sagaStateRepository.findAll().stream()
-            .filter(s -> "FAILED".equals(s.getStatus()))
-            .count();
-        long processing = sagaStateRepository.findAll().stream()
-            .filter(s -> "PROCESSING".equals(s.getStatus()) || "STARTED".equals(s.getStatus()))
-            .count();
-
-        totalGauge.set((int) total);
-        completedGauge.set((int) completed);
-        failedGauge.set((int) failed);
-        processingGauge.set((int) processing);
-        
-        if (total > 0) {
-            successRateGauge.set((int) ((double) completed / total * 100));
+        Set<Integer> partitions = sagaPartitionOwnership.ownedPartitions();
+        if (!partitions.isEmpty()) {
+            reconcile(partitions);
         }
     }
+
+    private void reconcile(Set<Integer> partitions) {
+        Map<Integer, Map<String, Long>> actual = new HashMap<>();
+        partitions.forEach(partition -> actual.put(partition, new HashMap<>()));
+        sagaStateRepository.countByStatus(partitions)
+            .forEach(row -> actual.get(row.getPartitionNo()).put(row.getStatus(), row.getCount()));
+        actual.forEach((partition, counts) -> {
+            Map<String, AtomicLong> current = new ConcurrentHashMap<>();
+            statuses.forEach(status -> current.put(status, new AtomicLong()));
+            counts.forEach((status, count) -> {
+                registerStatus(status);
+                current.put(status, new AtomicLong(count));
+            });
+            // Skip partitions revoked while the counts were being loaded
+            if (sagaPartitionOwnership.owns(partition)) {
+                countsByPartition.put(partition, current);
+            }
+        });
+    }
+
+    private AtomicLong counter(int partition, String status) {
+        registerStatus(status);
+        return countsByPartition.computeIfAbsent(partition, p -> new ConcurrentHashMap<>())
+            .computeIfAbsent(status, s -> new AtomicLong());
+    }
+
+    private void registerStatus(String status) {
+        if (statuses.add(status)) {
+            Gauge.builder("saga_status", countsByPartition, counts -> count(status)).tag("status", status).register(meterRegistry);
+        }
+    }
+
+    private long count(String status) {
+        return countsByPartition.values().stream()
+            .mapToLong(counts -> counts.getOrDefault(status, ZERO).get())
+            .sum();
+    }
+
+    private long total() {
+        return countsByPartition.values().stream()
+            .flatMap(counts -> counts.values().stream())
+            .mapToLong(AtomicLong::get)
+            .sum();
+    }
 }
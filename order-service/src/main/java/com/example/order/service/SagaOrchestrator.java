@@ -1,8 +1,10 @@
 package com.example.order.service;
 
 import com.example.order.dto.PaymentRequest;
+import com.example.order.entity.Order;
 import com.example.order.entity.SagaEvent;
 import com.example.order.entity.SagaState;
+import com.example.order.repository.OrderRepository;
 import com.example.order.repository.SagaEventRepository;
 import com.example.order.repository.SagaStateRepository;
 import com.fasterxml.jackson.core.JsonProcessingException;
@@ -13,18 +15,28 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.reactive.function.client.WebClient;
 
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 
 import java.math.BigDecimal;
 import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 
 @Service
@@ -40,82 +52,169 @@ public class SagaOrchestrator {
     private SagaEventRepository sagaEventRepository;
 
     @Autowired
-    private KafkaTemplate<String, String> kafkaTemplate;
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private OutboxService outboxService;
 
     @Autowired
     private ObjectMapper objectMapper;
 
+    @Autowired
+    private OrderStatusPublisher orderStatusPublisher;
+
+    @Autowired
+    private IdGenerator idGenerator;
+
+    @Autowired
+    private SagaMetricsService sagaMetricsService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private SagaPartitionOwnership sagaPartitionOwnership;
+
     @Value("${payment.service.url:http://payment-service:8082}")
     private String paymentServiceUrl;
 
+    @Value("${saga.timeout.tick:100}")
+    private long timeoutTick;
+
+    @Value("${saga.timeout.wheel-size:1024}")
+    private int timeoutWheelSize;
+
     private final WebClient webClient = WebClient.builder().build();
 
-    public String startSaga(Long orderId, String customerId, String productId, Integer quantity, BigDecimal amount) {
-        String sagaId = UUID.randomUUID().toString();
-        return startSagaWithId(sagaId, orderId, customerId, productId, quantity, amount);
+    private SagaTimeoutWheel timeoutWheel;
+
+    @PostConstruct
+    public void startTimeoutWheel() {
+        timeoutWheel = new SagaTimeoutWheel(timeoutTick, timeoutWheelSize, this::expireSagas);
+        sagaPartitionOwnership.onAssigned(this::scheduleDeadlines);
+        sagaPartitionOwnership.onRevoked(timeoutWheel::cancelPartitions);
+    }
+
+    // Load the deadlines of sagas still waiting in partitions this replica just took over
+    private void scheduleDeadlines(Set<Integer> partitions) {
+        sagaStateRepository.findDeadlines("WAITING", partitions)
+            .forEach(deadline -> timeoutWheel.schedule(deadline.getOrderId(), deadline.getPartitionNo(), toMillis(deadline.getTimeoutAt())));
+        logger.info("Saga timeout wheel holds {} pending deadlines", timeoutWheel.size());
     }
 
-    public String startSagaWithId(String sagaId, Long orderId, String customerId, String productId, Integer quantity, BigDecimal amount) {
+    // The partition may have been revoked while the transaction was committing
+    private void scheduleIfOwned(Long orderId, int partition, long deadlineMillis) {
+        if (sagaPartitionOwnership.owns(partition)) {
+            timeoutWheel.schedule(orderId, partition, deadlineMillis);
+        }
+    }
+
+    @PreDestroy
+    public void stopTimeoutWheel() {
+        timeoutWheel.stop();
+    }
+
+    // Transitions below only change the saga in memory and append its audit events, so a whole
+    // batch of them can be persisted with one saveAll in the caller's transaction.
+
+    public SagaState newSaga(UUID sagaId, Long orderId, String customerId, BigDecimal amount, int partition, List<SagaEvent> events) {
         logger.info("Starting saga {} for order: {}", sagaId, orderId);
 
         SagaState saga = new SagaState(sagaId, orderId, "WAITING", "ORDER_CREATED");
-        saga = sagaStateRepository.save(saga);
-        
-        logSagaEvent(sagaId, "SAGA_STARTED", String.format("Order: %d, Customer: %s, Amount: %s", orderId, customerId, amount));
-        
-        logger.info("Saga {} state saved for order: {} with status WAITING", sagaId, orderId);
-        return sagaId;
+        saga.setPartitionNo(partition);
+        // Timeouts and metrics of the saga are handled by the replica owning its partition
+        if (sagaPartitionOwnership.owns(partition)) {
+            sagaMetricsService.recordTransition(partition, null, "WAITING");
+            long deadline = toMillis(saga.getTimeoutAt());
+            afterCommit(() -> scheduleIfOwned(orderId, partition, deadline));
+        }
+        events.add(new SagaEvent(sagaId, "SAGA_STARTED", String.format("Order: %d, Customer: %s, Amount: %s", orderId, customerId, amount)));
+        return saga;
     }
 
-    public void processPayment(Long orderId, Long paymentId) {
-        SagaState saga = sagaStateRepository.findByOrderId(orderId).orElseThrow();
-        saga.setStatus("PROCESSING");
+    public void markPaymentProcessing(SagaState saga, Long paymentId, List<SagaEvent> events) {
+        transition(saga, "PROCESSING");
         saga.setCurrentStep("PAYMENT_PROCESSING");
         saga.setPaymentId(paymentId);
-        sagaStateRepository.save(saga);
-        
-        logSagaEvent(saga.getSagaId(), "PAYMENT_PROCESSING", String.format("Payment ID: %d", paymentId));
-        
-        logger.info("Payment processing started for order: {}, payment: {}", orderId, paymentId);
+        events.add(new SagaEvent(saga.getSagaId(), "PAYMENT_PROCESSING", String.format("Payment ID: %d", paymentId)));
+
+        logger.info("Payment processing started for order: {}, payment: {}", saga.getOrderId(), paymentId);
     }
 
-    public void compensate(SagaState saga) {
-        saga.setStatus("COMPENSATING");
-        sagaStateRepository.save(saga);
-        
-        logSagaEvent(saga.getSagaId(), "COMPENSATION_STARTED", "Starting compensation for order: " + saga.getOrderId());
+    public void markCompleted(SagaState saga, List<SagaEvent> events) {
+        transition(saga, "COMPLETED");
+        saga.setCurrentStep("PAYMENT_COMPLETED");
+        events.add(new SagaEvent(saga.getSagaId(), "SAGA_COMPLETED", "Payment completed successfully"));
 
-        logger.info("Starting compensation for order: {}", saga.getOrderId());
+        logger.info("Saga completed successfully for order: {}", saga.getOrderId());
+    }
+
+    public void markFailed(SagaState saga, List<SagaEvent> events) {
+        transition(saga, "FAILED");
+        saga.setCurrentStep("PAYMENT_FAILED");
+        events.add(new SagaEvent(saga.getSagaId(), "SAGA_FAILED", "Payment failed"));
+
+        logger.info("Saga failed for order: {}", saga.getOrderId());
+    }
+
+    public void markRefunded(SagaState saga, List<SagaEvent> events) {
+        transition(saga, "REFUNDED");
+        saga.setCurrentStep("PAYMENT_REFUNDED");
+        events.add(new SagaEvent(saga.getSagaId(), "PAYMENT_REFUNDED", "Payment cancelled and refunded"));
 
-        if (saga.getPaymentId() != null) {
-            cancelPayment(saga.getPaymentId());
-            logSagaEvent(saga.getSagaId(), "PAYMENT_CANCELLED", "Payment ID: " + saga.getPaymentId());
+        logger.info("Payment refunded for order: {}", saga.getOrderId());
+    }
+
+    private void transition(SagaState saga, String status) {
+        if (sagaPartitionOwnership.owns(saga.getPartitionNo())) {
+            if ("WAITING".equals(saga.getStatus())) {
+                Long orderId = saga.getOrderId();
+                afterCommit(() -> timeoutWheel.cancel(orderId));
+            }
+            sagaMetricsService.recordTransition(saga.getPartitionNo(), saga.getStatus(), status);
         }
+        saga.setStatus(status);
+    }
 
-        cancelOrder(saga.getOrderId());
-        logSagaEvent(saga.getSagaId(), "ORDER_CANCELLED", "Order ID: " + saga.getOrderId());
+    // Wheel changes follow the database: a rolled-back saga is never scheduled or cancelled
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
 
-        saga.setStatus("FAILED");
-        saga.setCurrentStep("COMPENSATED");
-        sagaStateRepository.save(saga);
-        
-        logSagaEvent(saga.getSagaId(), "COMPENSATION_COMPLETED", "All compensations executed");
+    public Map<Long, SagaState> findSagasByOrderIds(Collection<Long> orderIds) {
+        Map<Long, SagaState> sagas = new HashMap<>();
+        sagaStateRepository.findByOrderIdIn(orderIds).forEach(saga -> sagas.put(saga.getOrderId(), saga));
+        return sagas;
+    }
 
-        logger.info("Compensation completed for order: {}", saga.getOrderId());
+    public Set<UUID> findExistingSagaIds(Collection<UUID> sagaIds) {
+        return new HashSet<>(sagaStateRepository.findExistingSagaIds(sagaIds));
     }
 
-    public void completeSaga(Long orderId) {
-        SagaState saga = sagaStateRepository.findByOrderId(orderId).orElseThrow();
-        saga.setStatus("COMPLETED");
-        saga.setCurrentStep("PAYMENT_COMPLETED");
-        sagaStateRepository.save(saga);
-        
-        logSagaEvent(saga.getSagaId(), "SAGA_COMPLETED", "Payment completed successfully");
-        
-        logger.info("Saga completed successfully for order: {}", orderId);
+    public void saveAll(Collection<SagaState> sagas, List<SagaEvent> events) {
+        sagaStateRepository.saveAll(sagas);
+        sagaEventRepository.saveAll(events);
     }
 
-    private void cancelPayment(Long paymentId) {
+    /**
+     * Cancels the saga's payment with payment-service. The remote call cannot be part of the
+     * compensating transaction, so it runs before it; if that transaction then fails, the
+     * PaymentCancelled event from payment-service still moves the saga to REFUNDED.
+     */
+    public boolean cancelPayment(SagaState saga) {
+        Long paymentId = saga.getPaymentId();
+        if (paymentId == null) {
+            return false;
+        }
         try {
             webClient.post()
                     .uri(paymentServiceUrl + "/api/payments/" + paymentId + "/cancel")
@@ -123,36 +222,44 @@ public class SagaOrchestrator {
                     .bodyToMono(String.class)
                     .block();
 
-            publishCompensationEvent("PaymentCancelled", paymentId);
             logger.info("Payment cancelled: {}", paymentId);
+            return true;
 
         } catch (Exception e) {
             logger.error("Failed to cancel payment: {}", paymentId, e);
+            return false;
         }
     }
 
-    private void cancelOrder(Long orderId) {
-        try {
-            publishCompensationEvent("OrderCancelled", orderId);
-            logger.info("Order cancelled: {}", orderId);
-        } catch (Exception e) {
-            logger.error("Failed to cancel order: {}", orderId, e);
-        }
-    }
+    /**
+     * Moves the saga to FAILED with its compensation events; runs in the caller's transaction.
+     */
+    public void compensate(SagaState saga, boolean paymentCancelled) {
+        logger.info("Starting compensation for order: {}", saga.getOrderId());
 
-    private void logSagaEvent(String sagaId, String eventType, String eventData) {
-        try {
-            SagaEvent event = new SagaEvent(sagaId, eventType, eventData);
-            sagaEventRepository.save(event);
-            logger.debug("Logged saga event: {} for saga: {}", eventType, sagaId);
-        } catch (Exception e) {
-            logger.error("Failed to log saga event: {} for saga: {}", eventType, sagaId, e);
+        List<SagaEvent> events = new ArrayList<>();
+        transition(saga, "COMPENSATING");
+        events.add(new SagaEvent(saga.getSagaId(), "COMPENSATION_STARTED", "Starting compensation for order: " + saga.getOrderId()));
+
+        if (paymentCancelled) {
+            publishCompensationEvent("PaymentCancelled", saga.getPaymentId());
+            events.add(new SagaEvent(saga.getSagaId(), "PAYMENT_CANCELLED", "Payment ID: " + saga.getPaymentId()));
         }
+
+        publishCompensationEvent("OrderCancelled", saga.getOrderId());
+        events.add(new SagaEvent(saga.getSagaId(), "ORDER_CANCELLED", "Order ID: " + saga.getOrderId()));
+
+        transition(saga, "FAILED");
+        saga.setCurrentStep("COMPENSATED");
+        events.add(new SagaEvent(saga.getSagaId(), "COMPENSATION_COMPLETED", "All compensations executed"));
+        saveAll(List.of(saga), events);
+
+        logger.info("Compensation completed for order: {}", saga.getOrderId());
     }
 
     private void publishCompensationEvent(String eventType, Long entityId) {
         try {
-            String idempotencyKey = UUID.randomUUID().toString();
+            String idempotencyKey = idGenerator.nextId();
             Map<String, Object> event = new HashMap<>();
             event.put("eventType", eventType);
             event.put("entityId", entityId);
@@ -160,9 +267,9 @@ public class SagaOrchestrator {
             event.put("timestamp", Instant.now().toString());
 
             String eventJson = objectMapper.writeValueAsString(event);
-            kafkaTemplate.send(COMPENSATION_TOPIC, entityId.toString(), eventJson);
+            outboxService.enqueue(COMPENSATION_TOPIC, null, entityId.toString(), eventJson);
 
-            logger.info("Published {} event for entity: {} with idempotencyKey: {}", eventType, entityId, idempotencyKey);
+            logger.info("Queued {} event for entity: {} with idempotencyKey: {}", eventType, entityId, idempotencyKey);
 
         } catch (JsonProcessingException e) {
             logger.error("Error publishing compensation event", e);
@@ -173,41 +280,60 @@ public class SagaOrchestrator {
         return sagaStateRepository.findByOrderId(orderId);
     }
 
-    @Scheduled(fixedDelay = 5000)
+    /**
+     * Safety net for deadlines the wheel does not hold, e.g. sagas of an owned partition started
+     * from a retry topic on another replica. Only this replica's partitions are swept, and the
+     * (status, partition_no, timeout_at) index keeps this proportional to the expired sagas.
+     */
+    @Scheduled(fixedDelayString = "${saga.timeout.sweep-interval:30000}")
     public void checkTimeouts() {
-        java.time.LocalDateTime now = java.time.LocalDateTime.now();
-        sagaStateRepository.findAll().stream()
-            .filter(saga -> "WAITING".equals(saga.getStatus()))
-            .filter(saga -> saga.getTimeoutAt() != null && saga.getTimeoutAt().isBefore(now))
-            .forEach(saga -> {
-                logger.warn("Saga timeout - no payment received for order: {}", saga.getOrderId());
-                saga.setStatus("NO_PAYMENT");
-                saga.setCurrentStep("TIMEOUT");
-                sagaStateRepository.save(saga);
-                
-                logSagaEvent(saga.getSagaId(), "SAGA_TIMEOUT", "No payment received within timeout period");
-            });
+        Set<Integer> partitions = sagaPartitionOwnership.ownedPartitions();
+        if (partitions.isEmpty()) {
+            return;
+        }
+        List<Long> expired = sagaStateRepository.findOrderIdsTimedOutBefore("WAITING", partitions, LocalDateTime.now());
+        if (!expired.isEmpty()) {
+            expireSagas(expired);
+        }
     }
 
-    public void refundPayment(Long orderId) {
-        SagaState saga = sagaStateRepository.findByOrderId(orderId).orElseThrow();
-        saga.setStatus("REFUNDED");
-        saga.setCurrentStep("PAYMENT_REFUNDED");
-        sagaStateRepository.save(saga);
-        
-        logSagaEvent(saga.getSagaId(), "PAYMENT_REFUNDED", "Payment cancelled and refunded");
-        
-        logger.info("Payment refunded for order: {}", orderId);
+    private void expireSagas(List<Long> orderIds) {
+        transactionTemplate.executeWithoutResult(status -> {
+            LocalDateTime now = LocalDateTime.now();
+            List<SagaState> timedOut = new ArrayList<>();
+            List<SagaEvent> events = new ArrayList<>();
+            for (SagaState saga : sagaStateRepository.findByOrderIdIn(orderIds)) {
+                // Sagas of partitions moved to another replica are timed out there
+                if (!"WAITING".equals(saga.getStatus()) || saga.getTimeoutAt() == null
+                        || !sagaPartitionOwnership.owns(saga.getPartitionNo())) {
+                    continue;
+                }
+                if (saga.getTimeoutAt().isAfter(now)) {
+                    afterCommit(() -> scheduleIfOwned(saga.getOrderId(), saga.getPartitionNo(), toMillis(saga.getTimeoutAt())));
+                    continue;
+                }
+                logger.warn("Saga timeout - no payment received for order: {}", saga.getOrderId());
+                transition(saga, "NO_PAYMENT");
+                saga.setCurrentStep("TIMEOUT");
+                events.add(new SagaEvent(saga.getSagaId(), "SAGA_TIMEOUT", "No payment received within timeout period"));
+                timedOut.add(saga);
+            }
+            if (timedOut.isEmpty()) {
+                return;
+            }
+            List<Order> orders = orderRepository.findAllById(timedOut.stream().map(SagaState::getOrderId).toList());
+            for (Order order : orders) {
+                if (!"FAILED".equals(order.getStatus()) && !"CANCELLED".equals(order.getStatus())) {
+                    order.setStatus("FAILED");
+                    orderStatusPublisher.publishStatusChanged(order.getId(), "FAILED");
+                }
+            }
+            orderRepository.saveAll(orders);
+            saveAll(timedOut, events);
+        });
     }
 
-    public void failSaga(Long orderId) {
-        SagaState saga = sagaStateRepository.findByOrderId(orderId).orElseThrow();
-        saga.setStatus("FAILED");
-        saga.setCurrentStep("PAYMENT_FAILED");
-        sagaStateRepository.save(saga);
-        
-        logSagaEvent(saga.getSagaId(), "SAGA_FAILED", "Payment failed");
-        
-        logger.info("Saga failed for order: {}", orderId);
+    private static long toMillis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
     }
 }
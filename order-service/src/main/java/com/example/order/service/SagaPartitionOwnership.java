@@ -0,0 +1,98 @@
+package com.example.order.service;
+
+import org.apache.kafka.common.TopicPartition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.kafka.listener.ConsumerAwareRebalanceListener;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Which sagas this replica is responsible for. Every saga belongs to the order-events partition
+ * its OrderCreated record came from, and the replica currently assigned that partition runs its
+ * timeouts and counts it in the saga metrics. Spring Boot installs this bean as the rebalance
+ * listener of the listener containers, so ownership follows the consumer group on every rebalance,
+ * and the timeout wheel and metrics drop what they hold for a partition as soon as it is revoked.
+ */
+@Component
+public class SagaPartitionOwnership implements ConsumerAwareRebalanceListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(SagaPartitionOwnership.class);
+    public static final String SAGA_TOPIC = "order-events";
+
+    private final Set<Integer> owned = ConcurrentHashMap.newKeySet();
+    private final List<Consumer<Set<Integer>>> assignmentListeners = new CopyOnWriteArrayList<>();
+    private final List<Consumer<Set<Integer>>> revocationListeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Calls {@code listener} with the partitions gained on each rebalance, on the consumer thread.
+     */
+    public void onAssigned(Consumer<Set<Integer>> listener) {
+        assignmentListeners.add(listener);
+    }
+
+    /**
+     * Calls {@code listener} with the partitions lost on each rebalance, on the consumer thread,
+     * after they have been removed from {@link #ownedPartitions()}.
+     */
+    public void onRevoked(Consumer<Set<Integer>> listener) {
+        revocationListeners.add(listener);
+    }
+
+    public boolean owns(Integer partition) {
+        return partition != null && owned.contains(partition);
+    }
+
+    public Set<Integer> ownedPartitions() {
+        return Set.copyOf(owned);
+    }
+
+    @Override
+    public void onPartitionsAssigned(Collection<TopicPartition> partitions) {
+        Set<Integer> gained = sagaPartitions(partitions);
+        gained.removeAll(owned);
+        if (gained.isEmpty()) {
+            return;
+        }
+        owned.addAll(gained);
+        logger.info("Took over saga partitions {}, now owning {}", gained, new TreeSet<>(owned));
+        notify(assignmentListeners, gained, "take over");
+    }
+
+    @Override
+    public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
+        Set<Integer> revoked = sagaPartitions(partitions);
+        revoked.retainAll(owned);
+        if (revoked.isEmpty()) {
+            return;
+        }
+        owned.removeAll(revoked);
+        logger.info("Released saga partitions {}, now owning {}", revoked, new TreeSet<>(owned));
+        notify(revocationListeners, revoked, "release");
+    }
+
+    private static void notify(List<Consumer<Set<Integer>>> listeners, Set<Integer> partitions, String action) {
+        for (Consumer<Set<Integer>> listener : listeners) {
+            try {
+                listener.accept(partitions);
+            } catch (Exception e) {
+                logger.error("Failed to {} saga partitions {}", action, partitions, e);
+            }
+        }
+    }
+
+    private static Set<Integer> sagaPartitions(Collection<TopicPartition> partitions) {
+        Set<Integer> result = new TreeSet<>();
+        partitions.stream()
+            .filter(partition -> SAGA_TOPIC.equals(partition.topic()))
+            .forEach(partition -> result.add(partition.partition()));
+        return result;
+    }
+}
@@ -0,0 +1,146 @@
+package com.example.order.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Hashed timing wheel of pending saga deadlines, keyed by orderId. A deadline lands in bucket
+ * {@code tick % wheelSize} with the number of full turns still to wait, so registering and
+ * cancelling are O(1) and each tick only looks at one bucket. Each deadline remembers the partition
+ * of its saga so all deadlines of a revoked partition can be dropped at once. Expired orderIds are
+ * handed to the expiry handler in one batch per tick, on the wheel's own thread.
+ */
+public class SagaTimeoutWheel {
+
+    private static final Logger logger = LoggerFactory.getLogger(SagaTimeoutWheel.class);
+
+    private final long tickMillis;
+    private final List<Set<Deadline>> buckets;
+    private final Map<Long, Deadline> pending = new HashMap<>();
+    private final Consumer<List<Long>> expiryHandler;
+    private final LongSupplier clock;
+    private final ScheduledExecutorService ticker;
+    private final long startMillis;
+    private long currentTick;
+
+    public SagaTimeoutWheel(long tickMillis, int wheelSize, Consumer<List<Long>> expiryHandler) {
+        this(tickMillis, wheelSize, expiryHandler, System::currentTimeMillis,
+            Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("saga-timeout-")));
+    }
+
+    // Without a ticker the wheel only advances when tick() is called.
+    SagaTimeoutWheel(long tickMillis, int wheelSize, Consumer<List<Long>> expiryHandler,
+                     LongSupplier clock, ScheduledExecutorService ticker) {
+        this.tickMillis = tickMillis;
+        this.expiryHandler = expiryHandler;
+        this.buckets = new ArrayList<>(wheelSize);
+        for (int i = 0; i < wheelSize; i++) {
+            buckets.add(new LinkedHashSet<>());
+        }
+        this.clock = clock;
+        this.startMillis = clock.getAsLong();
+        this.ticker = ticker;
+        if (ticker != null) {
+            ticker.scheduleAtFixedRate(this::tick, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Registers (or moves) the deadline of a saga. Deadlines already in the past expire on the next tick.
+     */
+    public synchronized void schedule(Long orderId, int partition, long deadlineMillis) {
+        cancel(orderId);
+        long tick = Math.max(currentTick, (deadlineMillis - startMillis + tickMillis - 1) / tickMillis);
+        Deadline deadline = new Deadline(orderId, partition, (int) (tick % buckets.size()), (tick - currentTick) / buckets.size());
+        buckets.get(deadline.bucket).add(deadline);
+        pending.put(orderId, deadline);
+    }
+
+    public synchronized void cancel(Long orderId) {
+        Deadline deadline = pending.remove(orderId);
+        if (deadline != null) {
+            buckets.get(deadline.bucket).remove(deadline);
+        }
+    }
+
+    /**
+     * Drops the deadlines of all sagas in {@code partitions}, for partitions moved to another replica.
+     */
+    public synchronized void cancelPartitions(Set<Integer> partitions) {
+        Iterator<Deadline> deadlines = pending.values().iterator();
+        while (deadlines.hasNext()) {
+            Deadline deadline = deadlines.next();
+            if (partitions.contains(deadline.partition)) {
+                deadlines.remove();
+                buckets.get(deadline.bucket).remove(deadline);
+            }
+        }
+    }
+
+    public synchronized int size() {
+        return pending.size();
+    }
+
+    public void stop() {
+        if (ticker != null) {
+            ticker.shutdownNow();
+        }
+    }
+
+    void tick() {
+        List<Long> expired = new ArrayList<>();
+        synchronized (this) {
+            long now = clock.getAsLong();
+            // Catch up on ticks missed while the previous expiry batch was being handled
+            while (startMillis + currentTick * tickMillis <= now) {
+                Iterator<Deadline> bucket = buckets.get((int) (currentTick % buckets.size())).iterator();
+                while (bucket.hasNext()) {
+                    Deadline deadline = bucket.next();
+                    if (deadline.rounds > 0) {
+                        deadline.rounds--;
+                    } else {
+                        bucket.remove();
+                        pending.remove(deadline.orderId);
+                        expired.add(deadline.orderId);
+                    }
+                }
+                currentTick++;
+            }
+        }
+        if (!expired.isEmpty()) {
+            try {
+                expiryHandler.accept(expired);
+            } catch (Exception e) {
+                logger.error("Failed to expire {} sagas", expired.size(), e);
+            }
+        }
+    }
+
+    private static final class Deadline {
+        private final Long orderId;
+        private final int partition;
+        private final int bucket;
+        private long rounds;
+
+        private Deadline(Long orderId, int partition, int bucket, long rounds) {
+            this.orderId = orderId;
+            this.partition = partition;
+            this.bucket = bucket;
+            this.rounds = rounds;
+        }
+    }
+}
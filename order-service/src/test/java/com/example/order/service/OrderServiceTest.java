@@ -0,0 +1,89 @@
+package com.example.order.service;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.listener.BatchListenerFailedException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+
+class OrderServiceTest {
+
+    private final OrderService orderService = new OrderService();
+    private final ExecutorService shardExecutor = Executors.newFixedThreadPool(3);
+    private final List<Integer> applied = Collections.synchronizedList(new ArrayList<>());
+    private final List<Integer> committed = Collections.synchronizedList(new ArrayList<>());
+
+    // Items 0..15 keyed by themselves: item i goes to shard i % 4, shard 0 runs on the caller
+    private final List<Integer> items = IntStream.range(0, 16).boxed().toList();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(orderService, "transactionTemplate", new TransactionTemplate(mock(PlatformTransactionManager.class)));
+        ReflectionTestUtils.setField(orderService, "parallelism", 4);
+    }
+
+    @AfterEach
+    void tearDown() {
+        shardExecutor.shutdownNow();
+    }
+
+    @Test
+    void appliesEveryShardWhenNothingFails() {
+        applyFailing(Set.of());
+
+        assertThat(applied).containsExactlyInAnyOrderElementsOf(items);
+        assertThat(committed).containsExactlyInAnyOrderElementsOf(items);
+    }
+
+    @Test
+    void reportsTheLowestFailedRecordAcrossShards() {
+        assertThatThrownBy(() -> applyFailing(Set.of(9, 6)))
+            .isInstanceOfSatisfying(BatchListenerFailedException.class,
+                e -> assertThat(e.getRecord().offset()).isEqualTo(6));
+    }
+
+    @Test
+    void reportsALowerFailureOfAnotherShardOverTheCallersShard() {
+        assertThatThrownBy(() -> applyFailing(Set.of(8, 3)))
+            .isInstanceOfSatisfying(BatchListenerFailedException.class,
+                e -> assertThat(e.getRecord().offset()).isEqualTo(3));
+    }
+
+    @Test
+    void shardStopsAtItsFirstFailedRecord() {
+        assertThatThrownBy(() -> applyFailing(Set.of(5)))
+            .isInstanceOf(BatchListenerFailedException.class);
+
+        // Shard 1 (1, 5, 9, 13) falls back to one record at a time and stops at 5
+        assertThat(committed).contains(1).doesNotContain(5, 9, 13);
+        assertThat(committed).containsAll(List.of(0, 2, 3, 4, 6, 7, 8, 10, 11, 12, 14, 15));
+    }
+
+    private void applyFailing(Set<Integer> failing) {
+        orderService.applyInBatch(shardExecutor, items, item -> item,
+            batch -> {
+                batch.stream().filter(failing::contains).findFirst().ifPresent(item -> {
+                    throw new IllegalStateException("Cannot apply " + item);
+                });
+                applied.addAll(batch);
+                return batch;
+            },
+            committed::add,
+            item -> new ConsumerRecord<>("order-events", 0, item, String.valueOf(item), "{}"));
+    }
+}
@@ -0,0 +1,152 @@
+package com.example.order.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SagaTimeoutWheelTest {
+
+    private static final long START = 1_000_000L;
+    private static final long TICK = 100;
+
+    private final AtomicLong clock = new AtomicLong(START);
+    private final List<List<Long>> batches = new ArrayList<>();
+    private SagaTimeoutWheel wheel;
+
+    @BeforeEach
+    void setUp() {
+        // 4 buckets of 100ms: one turn of the wheel is 400ms
+        wheel = new SagaTimeoutWheel(TICK, 4, batches::add, clock::get, null);
+    }
+
+    @Test
+    void deadlineWithinFirstTurnExpiresOnItsTick() {
+        wheel.schedule(1L, 0, START + 300);
+
+        advanceTo(START + 299);
+        assertThat(expired()).isEmpty();
+
+        advanceTo(START + 300);
+        assertThat(expired()).containsExactly(1L);
+        assertThat(wheel.size()).isZero();
+    }
+
+    @Test
+    void deadlineBetweenTicksIsRoundedUpToTheNextTick() {
+        wheel.schedule(1L, 0, START + 250);
+
+        advanceTo(START + 299);
+        assertThat(expired()).isEmpty();
+
+        advanceTo(START + 300);
+        assertThat(expired()).containsExactly(1L);
+    }
+
+    @Test
+    void deadlineSeveralTurnsAheadWaitsOutItsRounds() {
+        // Tick 10 lands in bucket 2, which is passed at ticks 2 and 6 before it is due
+        wheel.schedule(1L, 0, START + 1000);
+
+        for (long now = START; now < START + 1000; now += TICK) {
+            advanceTo(now);
+            assertThat(expired()).as("expired at %dms", now - START).isEmpty();
+        }
+        advanceTo(START + 999);
+        assertThat(expired()).isEmpty();
+
+        advanceTo(START + 1000);
+        assertThat(expired()).containsExactly(1L);
+    }
+
+    @Test
+    void roundsAreCountedFromTheCurrentTick() {
+        advanceTo(START + 350);
+
+        // Scheduled at tick 4 for tick 11: bucket 3, one more turn
+        wheel.schedule(1L, 0, START + 1100);
+
+        advanceTo(START + 1099);
+        assertThat(expired()).isEmpty();
+
+        advanceTo(START + 1100);
+        assertThat(expired()).containsExactly(1L);
+    }
+
+    @Test
+    void pastDeadlineExpiresOnTheNextTick() {
+        advanceTo(START + 500);
+
+        wheel.schedule(1L, 0, START + 100);
+        assertThat(expired()).isEmpty();
+
+        advanceTo(START + 600);
+        assertThat(expired()).containsExactly(1L);
+    }
+
+    @Test
+    void missedTicksAreCaughtUpInOneBatch() {
+        wheel.schedule(1L, 0, START + 200);
+        wheel.schedule(2L, 0, START + 700);
+        wheel.schedule(3L, 0, START + 1500);
+
+        advanceTo(START + 1000);
+
+        assertThat(batches).hasSize(1);
+        assertThat(batches.get(0)).containsExactly(1L, 2L);
+        assertThat(wheel.size()).isEqualTo(1);
+    }
+
+    @Test
+    void rescheduleMovesTheDeadline() {
+        wheel.schedule(1L, 0, START + 200);
+        wheel.schedule(1L, 0, START + 900);
+
+        advanceTo(START + 800);
+        assertThat(expired()).isEmpty();
+
+        advanceTo(START + 900);
+        assertThat(expired()).containsExactly(1L);
+    }
+
+    @Test
+    void cancelledDeadlineNeverExpires() {
+        wheel.schedule(1L, 0, START + 200);
+        wheel.cancel(1L);
+
+        advanceTo(START + 2000);
+
+        assertThat(expired()).isEmpty();
+        assertThat(wheel.size()).isZero();
+    }
+
+    @Test
+    void cancelPartitionsDropsOnlyTheirDeadlines() {
+        wheel.schedule(1L, 0, START + 200);
+        wheel.schedule(2L, 1, START + 200);
+        wheel.schedule(3L, 2, START + 900);
+
+        wheel.cancelPartitions(Set.of(1, 2));
+
+        assertThat(wheel.size()).isEqualTo(1);
+        advanceTo(START + 2000);
+        assertThat(expired()).containsExactly(1L);
+    }
+
+    private void advanceTo(long now) {
+        clock.set(now);
+        wheel.tick();
+    }
+
+    private List<Long> expired() {
+        List<Long> expired = new ArrayList<>();
+        batches.forEach(expired::addAll);
+        batches.clear();
+        return expired;
+    }
+}
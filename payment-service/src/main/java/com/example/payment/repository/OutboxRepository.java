@@ -0,0 +1,31 @@
+package com.example.payment.repository;
+
+import com.example.payment.entity.OutboxEvent;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface OutboxRepository extends JpaRepository<OutboxEvent, Long> {
+
+    // Rows locked by another relay are skipped rather than waited for. Rows whose key has a
+    // dead-lettered event stay put, so nothing is published past it.
+    @Query(value = "SELECT * FROM outbox o WHERE o.source = :source AND NOT EXISTS ("
+                 + "SELECT 1 FROM outbox_dead_letter d WHERE d.source = o.source AND d.message_key = o.message_key) "
+                 + "ORDER BY o.id LIMIT :limit FOR UPDATE OF o SKIP LOCKED", nativeQuery = true)
+    List<OutboxEvent> lockBatch(@Param("source") String source, @Param("limit") int limit);
+
+    // Lowest pending id per key, including rows locked by other relays
+    @Query(value = "SELECT message_key, MIN(id) FROM outbox WHERE source = :source AND message_key IN :keys GROUP BY message_key", nativeQuery = true)
+    List<Object[]> findFirstIds(@Param("source") String source, @Param("keys") Collection<String> keys);
+
+    @Modifying
+    @Query(value = "INSERT INTO outbox_dead_letter (id, source, topic, partition_no, message_key, payload, created_at, attempts, last_error) "
+                 + "SELECT id, source, topic, partition_no, message_key, payload, created_at, attempts, last_error FROM outbox WHERE id IN :ids", nativeQuery = true)
+    int copyToDeadLetter(@Param("ids") Collection<Long> ids);
+}
@@ -0,0 +1,257 @@
+package com.example.payment.service;
+
+import com.example.payment.entity.OutboxEvent;
+import com.example.payment.repository.OutboxRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publishes outbox rows to Kafka. Each pass locks a batch of this service's rows with
+ * FOR UPDATE SKIP LOCKED, sends them, waits for the acks and deletes the acknowledged rows in
+ * the same transaction, so every event is published at least once and concurrent replicas never
+ * send the same row at the same time. Rows with the same message key are sent one at a time in
+ * id order, and a row that fails holds back the later rows of its key until the next pass, so
+ * events for a key are never published out of order. A failed row keeps its attempt count and
+ * last error; after outbox.max-attempts it is moved to outbox_dead_letter, and the rest of its
+ * key stays in the outbox until that dead letter is replayed or deleted. Other keys keep flowing.
+ * Passes run every outbox.poll-interval and, with outbox.listen.enabled, as soon as a
+ * Postgres NOTIFY on the outbox channel reports new rows.
+ */
+@Component
+public class OutboxRelay {
+
+    private static final Logger logger = LoggerFactory.getLogger(OutboxRelay.class);
+    private static final String CHANNEL = "outbox";
+
+    @Autowired
+    private OutboxRepository outboxRepository;
+
+    @Autowired
+    private KafkaTemplate<String, String> kafkaTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${spring.application.name}")
+    private String source;
+
+    @Value("${outbox.batch-size:200}")
+    private int batchSize;
+
+    @Value("${outbox.send-timeout:10s}")
+    private Duration sendTimeout;
+
+    @Value("${outbox.max-attempts:10}")
+    private int maxAttempts;
+
+    @Value("${outbox.listen.enabled:true}")
+    private boolean listenEnabled;
+
+    @Value("${outbox.listen.reconnect-delay:5s}")
+    private Duration reconnectDelay;
+
+    @Value("${spring.datasource.url}")
+    private String url;
+
+    @Value("${spring.datasource.username}")
+    private String username;
+
+    @Value("${spring.datasource.password}")
+    private String password;
+
+    private volatile boolean running = true;
+    private Thread listener;
+
+    @PostConstruct
+    public void startListener() {
+        if (listenEnabled) {
+            listener = new Thread(this::listen, "outbox-listener");
+            listener.setDaemon(true);
+            listener.start();
+        }
+    }
+
+    @PreDestroy
+    public void stopListener() {
+        running = false;
+        if (listener != null) {
+            listener.interrupt();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${outbox.poll-interval:1000}")
+    public void poll() {
+        drain();
+    }
+
+    public synchronized void drain() {
+        try {
+            Integer published;
+            do {
+                published = transactionTemplate.execute(status -> publishBatch());
+            } while (published != null && published == batchSize);
+        } catch (Exception e) {
+            logger.error("Failed to publish outbox batch, will retry: {}", e.getMessage());
+        }
+    }
+
+    // Returns the number of acknowledged rows; a batch with failures or held-back rows ends the drain until the next pass
+    private int publishBatch() {
+        List<OutboxEvent> events = outboxRepository.lockBatch(source, batchSize);
+        if (events.isEmpty()) {
+            return 0;
+        }
+
+        // One queue per key in id order; rows without a key are not ordered against anything
+        Map<String, Deque<OutboxEvent>> queues = new LinkedHashMap<>();
+        List<Deque<OutboxEvent>> pending = new ArrayList<>();
+        for (OutboxEvent event : events) {
+            Deque<OutboxEvent> queue = event.getMessageKey() != null
+                ? queues.computeIfAbsent(event.getMessageKey(), key -> new ArrayDeque<>())
+                : new ArrayDeque<>();
+            if (queue.isEmpty()) {
+                pending.add(queue);
+            }
+            queue.add(event);
+        }
+        // An earlier row of the key is locked by another relay; ours wait until it is gone
+        if (!queues.isEmpty()) {
+            for (Object[] first : outboxRepository.findFirstIds(source, queues.keySet())) {
+                Deque<OutboxEvent> queue = queues.get((String) first[0]);
+                if (((Number) first[1]).longValue() < queue.peekFirst().getId()) {
+                    pending.remove(queue);
+                }
+            }
+        }
+
+        List<OutboxEvent> acknowledged = new ArrayList<>(events.size());
+        List<Long> deadLetters = new ArrayList<>();
+        // Each wave sends the next row of every key, so a key never has two rows in flight and a
+        // failed row holds back the rest of its key instead of being overtaken by them
+        while (!pending.isEmpty()) {
+            List<OutboxEvent> wave = new ArrayList<>(pending.size());
+            List<CompletableFuture<?>> sends = new ArrayList<>(pending.size());
+            for (Deque<OutboxEvent> queue : pending) {
+                OutboxEvent event = queue.poll();
+                wave.add(event);
+                sends.add(send(event));
+            }
+
+            long deadline = System.nanoTime() + sendTimeout.toNanos();
+            List<Deque<OutboxEvent>> next = new ArrayList<>(pending.size());
+            for (int i = 0; i < wave.size(); i++) {
+                OutboxEvent event = wave.get(i);
+                try {
+                    sends.get(i).get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                    acknowledged.add(event);
+                    if (!pending.get(i).isEmpty()) {
+                        next.add(pending.get(i));
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while publishing outbox batch", e);
+                } catch (Exception e) {
+                    Throwable cause = e instanceof ExecutionException && e.getCause() != null ? e.getCause() : e;
+                    event.setAttempts(event.getAttempts() + 1);
+                    event.setLastError(String.valueOf(cause));
+                    meterRegistry.counter("outbox_publish_failures").increment();
+                    if (event.getAttempts() >= maxAttempts) {
+                        logger.error("Moving outbox event {} for {} to outbox_dead_letter after {} attempts, holding back later events for key {}: {}",
+                            event.getId(), event.getTopic(), event.getAttempts(), event.getMessageKey(), cause.getMessage());
+                        deadLetters.add(event.getId());
+                    } else {
+                        logger.warn("Failed to publish outbox event {} for {} (attempt {}): {}",
+                            event.getId(), event.getTopic(), event.getAttempts(), cause.getMessage());
+                    }
+                }
+            }
+            pending = next;
+        }
+
+        outboxRepository.deleteAll(acknowledged);
+        if (!deadLetters.isEmpty()) {
+            // Flush the attempt counts first so the dead-letter copy carries the final error
+            outboxRepository.flush();
+            outboxRepository.copyToDeadLetter(deadLetters);
+            outboxRepository.deleteAllByIdInBatch(deadLetters);
+            meterRegistry.counter("outbox_dead_lettered").increment(deadLetters.size());
+        }
+        meterRegistry.counter("outbox_published").increment(acknowledged.size());
+        logger.debug("Published {} of {} outbox events", acknowledged.size(), events.size());
+        return acknowledged.size();
+    }
+
+    // Serialization or partition errors thrown by send itself count as a failed send of that row
+    private CompletableFuture<?> send(OutboxEvent event) {
+        try {
+            return kafkaTemplate.send(new ProducerRecord<>(event.getTopic(), event.getPartition(), event.getMessageKey(), event.getPayload()));
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private void listen() {
+        while (running) {
+            try (Connection connection = DriverManager.getConnection(url, username, password)) {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + CHANNEL);
+                }
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                logger.info("Listening for outbox notifications");
+                while (running) {
+                    PGNotification[] notifications = pgConnection.getNotifications(10_000);
+                    if (notifications == null) {
+                        continue;
+                    }
+                    for (PGNotification notification : notifications) {
+                        if (source.equals(notification.getParameter())) {
+                            drain();
+                            break;
+                        }
+                    }
+                }
+            } catch (SQLException e) {
+                if (!running) {
+                    return;
+                }
+                logger.warn("Outbox notification listener failed, reconnecting in {}: {}", reconnectDelay, e.getMessage());
+                try {
+                    Thread.sleep(reconnectDelay.toMillis());
+                } catch (InterruptedException ie) {
+                    return;
+                }
+            }
+        }
+    }
+}
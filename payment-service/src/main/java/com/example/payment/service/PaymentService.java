@@ -9,14 +9,13 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.Instant;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
-import java.util.UUID;
 
 @Service
 public class PaymentService {
@@ -28,11 +27,17 @@ public class PaymentService {
     private PaymentRepository paymentRepository;
 
     @Autowired
-    private KafkaTemplate<String, String> kafkaTemplate;
+    private OutboxService outboxService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
 
     @Autowired
     private ObjectMapper objectMapper;
 
+    @Autowired
+    private IdGenerator idGenerator;
+
     public PaymentResponse processPayment(PaymentRequest request) {
         logger.info("Processing payment for order: {} amount: {}", request.getOrderId(), request.getAmount());
 
@@ -47,7 +52,7 @@ public class PaymentService {
         // Simulate payment failure for amount < 10
         if (request.getAmount().doubleValue() < 10.0) {
             logger.error("Payment failed for order: {} - amount too low", request.getOrderId());
-            publishPaymentFailedEvent(request.getOrderId());
+            transactionTemplate.executeWithoutResult(status -> publishPaymentFailedEvent(request.getOrderId()));
             throw new RuntimeException("Payment failed: amount too low");
         }
 
@@ -68,8 +73,12 @@ public class PaymentService {
                     throw new RuntimeException("Simulated database connection error");
                 }
                 
-                payment = new Payment(request.getOrderId(), request.getAmount(), "COMPLETED");
-                payment = paymentRepository.save(payment);
+                // The PaymentProcessed event commits together with the payment (outbox)
+                payment = transactionTemplate.execute(status -> {
+                    Payment saved = paymentRepository.save(new Payment(request.getOrderId(), request.getAmount(), "COMPLETED"));
+                    publishPaymentProcessedEvent(saved);
+                    return saved;
+                });
                 
                 logger.info("Payment saved with ID: {} (attempt: {})", payment.getId(), attempt);
                 break;
@@ -79,7 +88,7 @@ public class PaymentService {
                 
                 if (attempt >= maxRetries) {
                     logger.error("Failed to save payment after {} attempts for order: {}", maxRetries, request.getOrderId());
-                    publishPaymentFailedEvent(request.getOrderId());
+                    transactionTemplate.executeWithoutResult(status -> publishPaymentFailedEvent(request.getOrderId()));
                     throw new RuntimeException("Payment processing failed after " + maxRetries + " attempts", e);
                 }
                 
@@ -91,9 +100,6 @@ public class PaymentService {
             }
         }
 
-        // Publish payment event with retry
-        publishPaymentProcessedWithRetry(payment);
-
         return new PaymentResponse(
             payment.getId(),
             payment.getOrderId(),
@@ -115,95 +121,70 @@ public class PaymentService {
     }
 
     public boolean cancelPayment(Long paymentId) {
-        Optional<Payment> payment = paymentRepository.findById(paymentId);
-        
-        if (payment.isPresent()) {
+        Boolean cancelled = transactionTemplate.execute(status -> {
+            Optional<Payment> payment = paymentRepository.findById(paymentId);
+            if (payment.isEmpty()) {
+                return false;
+            }
             Payment p = payment.get();
             p.setStatus("CANCELLED");
             paymentRepository.save(p);
-            
             publishPaymentCancelledEvent(p);
-            logger.info("Payment cancelled: {}", paymentId);
             return true;
+        });
+
+        if (Boolean.TRUE.equals(cancelled)) {
+            logger.info("Payment cancelled: {}", paymentId);
         }
-        
-        return false;
+        return Boolean.TRUE.equals(cancelled);
     }
 
     private void publishPaymentFailedEvent(Long orderId) {
-        try {
-            String idempotencyKey = UUID.randomUUID().toString();
-            Map<String, Object> event = new HashMap<>();
-            event.put("eventType", "PaymentFailed");
-            event.put("orderId", orderId);
-            event.put("idempotencyKey", idempotencyKey);
-            event.put("timestamp", Instant.now().toString());
-
-            String eventJson = objectMapper.writeValueAsString(event);
-            kafkaTemplate.send(PAYMENT_EVENTS_TOPIC, orderId.toString(), eventJson);
-            
-            logger.info("Published PaymentFailed event for order: {} with idempotencyKey: {}", orderId, idempotencyKey);
-        } catch (JsonProcessingException e) {
-            logger.error("Error publishing payment failed event", e);
-        }
+        String idempotencyKey = idGenerator.nextId();
+        Map<String, Object> event = new HashMap<>();
+        event.put("eventType", "PaymentFailed");
+        event.put("orderId", orderId);
+        event.put("idempotencyKey", idempotencyKey);
+        event.put("timestamp", Instant.now().toString());
+
+        enqueue(orderId.toString(), event);
+        logger.info("Queued PaymentFailed event for order: {} with idempotencyKey: {}", orderId, idempotencyKey);
     }
 
     private void publishPaymentCancelledEvent(Payment payment) {
-        try {
-            String idempotencyKey = UUID.randomUUID().toString();
-            Map<String, Object> event = new HashMap<>();
-            event.put("eventType", "PaymentCancelled");
-            event.put("paymentId", payment.getId());
-            event.put("orderId", payment.getOrderId());
-            event.put("idempotencyKey", idempotencyKey);
-            event.put("timestamp", Instant.now().toString());
-
-            String eventJson = objectMapper.writeValueAsString(event);
-            kafkaTemplate.send(PAYMENT_EVENTS_TOPIC, payment.getId().toString(), eventJson);
-            
-            logger.info("Published PaymentCancelled event for payment: {} with idempotencyKey: {}", payment.getId(), idempotencyKey);
-        } catch (JsonProcessingException e) {
-            logger.error("Error publishing payment cancelled event", e);
-        }
+        String idempotencyKey = idGenerator.nextId();
+        Map<String, Object> event = new HashMap<>();
+        event.put("eventType", "PaymentCancelled");
+        event.put("paymentId", payment.getId());
+        event.put("orderId", payment.getOrderId());
+        event.put("idempotencyKey", idempotencyKey);
+        event.put("timestamp", Instant.now().toString());
+
+        enqueue(payment.getId().toString(), event);
+        logger.info("Queued PaymentCancelled event for payment: {} with idempotencyKey: {}", payment.getId(), idempotencyKey);
     }
 
-    private void publishPaymentProcessedWithRetry(Payment payment) {
-        int maxRetries = 3;
-        int attempt = 0;
-        
-        while (attempt < maxRetries) {
-            try {
-                String idempotencyKey = UUID.randomUUID().toString();
-                Map<String, Object> event = new HashMap<>();
-                event.put("eventType", "PaymentProcessed");
-                event.put("paymentId", payment.getId());
-                event.put("orderId", payment.getOrderId());
-                event.put("amount", payment.getAmount());
-                event.put("status", payment.getStatus());
-                event.put("idempotencyKey", idempotencyKey);
-                event.put("timestamp", Instant.now().toString());
-
-                String eventJson = objectMapper.writeValueAsString(event);
-                
-                kafkaTemplate.send(PAYMENT_EVENTS_TOPIC, payment.getId().toString(), eventJson).get();
-                logger.info("Published PaymentProcessed event for payment: {} with idempotencyKey: {} (attempt: {})", payment.getId(), idempotencyKey, attempt + 1);
-                return;
-                
-            } catch (Exception e) {
-                attempt++;
-                logger.error("Error publishing payment event (attempt {}/{}): {}", attempt, maxRetries, e.getMessage());
-                
-                if (attempt >= maxRetries) {
-                    logger.error("Failed to publish payment event after {} attempts for payment: {}", maxRetries, payment.getId());
-                    // In production: send to dead letter queue or alert monitoring
-                } else {
-                    try {
-                        Thread.sleep(1000 * attempt); // Exponential backoff
-                    } catch (InterruptedException ie) {
-                        Thread.currentThread().interrupt();
-                    }
-                }
-            }
+    private void publishPaymentProcessedEvent(Payment payment) {
+        // The relay may send a row more than once; the key lets consumers recognise repeats.
+        String idempotencyKey = idGenerator.nextId();
+        Map<String, Object> event = new HashMap<>();
+        event.put("eventType", "PaymentProcessed");
+        event.put("paymentId", payment.getId());
+        event.put("orderId", payment.getOrderId());
+        event.put("amount", payment.getAmount());
+        event.put("status", payment.getStatus());
+        event.put("idempotencyKey", idempotencyKey);
+        event.put("timestamp", Instant.now().toString());
+
+        enqueue(payment.getId().toString(), event);
+        logger.info("Queued PaymentProcessed event for payment: {} with idempotencyKey: {}", payment.getId(), idempotencyKey);
+    }
+
+    private void enqueue(String key, Map<String, Object> event) {
+        try {
+            outboxService.enqueue(PAYMENT_EVENTS_TOPIC, null, key, objectMapper.writeValueAsString(event));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Error serializing " + event.get("eventType") + " event", e);
         }
     }
 }
@@ -0,0 +1,71 @@
+package com.example.payment.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IdGeneratorTest {
+
+    private final IdGenerator idGenerator = new IdGenerator();
+
+    @Test
+    void generatesVersion7UuidsCarryingTheCurrentTime() {
+        long before = System.currentTimeMillis();
+        UUID id = idGenerator.nextUuid();
+        long after = System.currentTimeMillis();
+
+        assertThat(id.version()).isEqualTo(7);
+        assertThat(id.variant()).isEqualTo(2);
+        assertThat(id.getMostSignificantBits() >>> 16).isBetween(before, after);
+    }
+
+    @Test
+    void idsIncreaseWithinAndAcrossMilliseconds() {
+        String previous = idGenerator.nextId();
+        for (int i = 0; i < 100_000; i++) {
+            String next = idGenerator.nextId();
+            assertThat(next).isGreaterThan(previous);
+            previous = next;
+        }
+    }
+
+    @Test
+    void concurrentCallersNeverGetTheSameTimestampAndCounter() throws Exception {
+        int threads = 4;
+        int perThread = 50_000;
+        // The random bits alone would make collisions unlikely; the counter must rule them out
+        Set<Long> timestampsAndCounters = ConcurrentHashMap.newKeySet();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < perThread; i++) {
+                        timestampsAndCounters.add(idGenerator.nextUuid().getMostSignificantBits());
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(timestampsAndCounters).hasSize(threads * perThread);
+    }
+}
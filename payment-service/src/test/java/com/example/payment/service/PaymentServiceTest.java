@@ -0,0 +1,54 @@
+package com.example.payment.service;
+
+import com.example.payment.dto.PaymentRequest;
+import com.example.payment.entity.Payment;
+import com.example.payment.repository.PaymentRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+class PaymentServiceTest {
+
+    private final PaymentService paymentService = new PaymentService();
+    private final PaymentRepository paymentRepository = mock(PaymentRepository.class);
+    private final OutboxService outboxService = mock(OutboxService.class);
+    private final PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(paymentService, "paymentRepository", paymentRepository);
+        ReflectionTestUtils.setField(paymentService, "outboxService", outboxService);
+        ReflectionTestUtils.setField(paymentService, "transactionTemplate", new TransactionTemplate(transactionManager));
+        ReflectionTestUtils.setField(paymentService, "objectMapper", new ObjectMapper());
+        ReflectionTestUtils.setField(paymentService, "idGenerator", new IdGenerator());
+    }
+
+    @Test
+    void queuesPaymentFailedInATransactionWhenTheAmountIsTooLow() {
+        assertThatThrownBy(() -> paymentService.processPayment(new PaymentRequest(7L, new BigDecimal("9.99"))))
+            .hasMessageContaining("amount too low");
+
+        // OutboxService.enqueue is MANDATORY: it must run between begin and commit
+        InOrder inOrder = inOrder(transactionManager, outboxService);
+        inOrder.verify(transactionManager).getTransaction(any());
+        inOrder.verify(outboxService).enqueue(eq("payment-events"), isNull(), eq("7"), contains("\"PaymentFailed\""));
+        inOrder.verify(transactionManager).commit(any());
+        verify(paymentRepository, never()).save(any(Payment.class));
+    }
+}